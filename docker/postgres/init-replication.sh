@@ -0,0 +1,9 @@
+#!/bin/bash
+# Executed once by the primary on initialization of its data directory
+set -e
+
+psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" <<-EOSQL
+    CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD '$REPLICATION_PASSWORD';
+EOSQL
+
+echo "host replication replicator all md5" >> "$PGDATA/pg_hba.conf"
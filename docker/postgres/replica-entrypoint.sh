@@ -0,0 +1,16 @@
+#!/bin/bash
+# Streaming replica of the primary, its data directory is cloned from the primary on the first start
+set -e
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+    mkdir -p "$PGDATA"
+    chown postgres "$PGDATA"
+    chmod 0700 "$PGDATA"
+    until gosu postgres pg_basebackup --host="$PRIMARY_HOST" --username=replicator --pgdata="$PGDATA" \
+            --write-recovery-conf --wal-method=stream; do
+        echo "Waiting for the primary to accept replication connections."
+        sleep 1
+    done
+fi
+
+exec gosu postgres postgres
@@ -0,0 +1,45 @@
+// k6 load test of watch reads, run with: k6 run -e BASE_URL=http://localhost:8080 load-test/watches.js
+import http from "k6/http";
+import { check } from "k6";
+
+const BASE_URL = __ENV.BASE_URL || "http://localhost:8080";
+const CONNECTIONS = parseInt(__ENV.CONNECTIONS || "5000");
+
+export const options = {
+    scenarios: {
+        reads: {
+            executor: "ramping-vus",
+            startVUs: 0,
+            stages: [
+                { duration: "30s", target: CONNECTIONS },
+                { duration: "2m", target: CONNECTIONS },
+                { duration: "15s", target: 0 },
+            ],
+            gracefulRampDown: "10s",
+        },
+    },
+    thresholds: {
+        http_req_failed: ["rate<0.01"],
+        http_req_duration: ["p(99)<1000"],
+    },
+};
+
+export function setup() {
+    const watches = http.get(`${BASE_URL}/api/v1/watches?limit=100`, { headers: { Accept: "application/json" } });
+    const ids = watches.json("content.#.id") || watches.json("_embedded.watchDTOList.#.id") || [];
+    if (ids.length === 0) {
+        throw new Error("At least one watch must exist before running the load test.");
+    }
+    return { ids: ids };
+}
+
+export default function (data) {
+    const id = data.ids[Math.floor(Math.random() * data.ids.length)];
+    const headers = { headers: { Accept: "application/json" } };
+
+    check(http.get(`${BASE_URL}/api/v1/watches/${id}`, headers), { "watch read": (r) => r.status === 200 });
+    check(http.get(`${BASE_URL}/api/v1/watches/${id}/fountain`), { "fountain read": (r) => r.status === 200 });
+    check(http.get(`${BASE_URL}/api/v1/watches?after=${id}&limit=20`, headers), {
+        "page read": (r) => r.status === 200,
+    });
+}
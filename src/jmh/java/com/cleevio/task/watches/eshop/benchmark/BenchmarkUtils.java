@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.model.Fountain;
+import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+
+import java.util.Random;
+
+public final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    public static byte[] createFountain(int size) {
+        // Fixed seed keeps the payload identical between runs
+        byte[] fountain = new byte[size];
+        new Random(42).nextBytes(fountain);
+        return fountain;
+    }
+
+    public static WatchDTO createWatchDTO(int fountainSize) {
+        return new WatchDTO(1L, "Prim", 250000, "Fountain watch", createFountain(fountainSize), 0L);
+    }
+
+    public static Watch createWatch(int fountainSize) {
+        byte[] fountain = createFountain(fountainSize);
+        Watch watch = new Watch(1L, "Prim", 250000, "Fountain watch",
+                new Fountain(ImageUtils.getContentHash(fountain), fountain.length,
+                        ImageUtils.getImageMediaType(fountain).toString()));
+        watch.setVersion(0L);
+        return watch;
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.config.JsonMergePatchHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.json.JsonMergePatch;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonMergePatchBenchmark {
+
+    private JsonMergePatchHttpMessageConverter converter;
+    private byte[] patch;
+
+    @Setup
+    public void setUp() {
+        converter = new JsonMergePatchHttpMessageConverter();
+        patch = "{\"title\":\"Prime\",\"price\":260000,\"description\":null}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public JsonMergePatch read() throws IOException {
+        MockHttpInputMessage inputMessage = new MockHttpInputMessage(patch);
+        inputMessage.getHeaders().setContentType(MediaType.valueOf("application/merge-patch+json"));
+        return converter.read(JsonMergePatch.class, inputMessage);
+    }
+
+}
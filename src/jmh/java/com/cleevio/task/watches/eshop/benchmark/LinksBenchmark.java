@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.hateoas.WatchLinkFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+// Links are built from the current request, so every benchmark thread needs its own request
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LinksBenchmark {
+
+    private static final int LISTING_SIZE = 1000;
+
+    private WatchLinkFactory watchLinkFactory;
+    private WatchDTO watchDTO;
+
+    @Setup
+    public void setUp() {
+        watchLinkFactory = new WatchLinkFactory();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/watches");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        watchDTO = new WatchDTO(1L, "Prim", 250000, "Fountain watch", null, 0L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public WatchDTO withLinks() {
+        return watchLinkFactory.withLinks(1L, watchDTO);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LISTING_SIZE)
+    public void listingWithLinks(Blackhole blackhole) {
+        WatchLinkFactory.WatchLinks watchLinks = watchLinkFactory.forCurrentRequest();
+        for (long id = 1; id <= LISTING_SIZE; id++) {
+            blackhole.consume(watchLinks.withLinks(id, watchDTO));
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.mapper.WatchMapperImpl;
+import com.cleevio.task.watches.eshop.model.Watch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MapperBenchmark {
+
+    private static final int FOUNTAIN_SIZE = 65536;
+
+    private WatchMapper watchMapper;
+    private Watch watch;
+    private byte[] fountain;
+    private WatchDTO watchDTO;
+
+    @Setup
+    public void setUp() {
+        watchMapper = new WatchMapperImpl();
+        watch = BenchmarkUtils.createWatch(FOUNTAIN_SIZE);
+        fountain = BenchmarkUtils.createFountain(FOUNTAIN_SIZE);
+        watchDTO = BenchmarkUtils.createWatchDTO(FOUNTAIN_SIZE);
+    }
+
+    @Benchmark
+    public WatchDTO watchToWatchDTO() {
+        return watchMapper.watchToWatchDTO(watch, fountain);
+    }
+
+    @Benchmark
+    public Watch watchDTOToWatch() {
+        return watchMapper.watchDTOToWatch(watchDTO);
+    }
+
+    @Benchmark
+    public Watch roundTrip() {
+        return watchMapper.watchDTOToWatch(watchMapper.watchToWatchDTO(watch, fountain));
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.config.ObjectMapperConfiguration;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.service.PatchService;
+import com.cleevio.task.watches.eshop.service.impl.PatchServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.json.Json;
+import javax.json.JsonMergePatch;
+import javax.validation.Validation;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PatchBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    private int fountainSize;
+
+    private PatchService patchService;
+    private WatchDTO watchDTO;
+    private JsonMergePatch patch;
+
+    @Setup
+    public void setUp() {
+        patchService = new PatchServiceImpl(Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapperConfiguration().objectMapper());
+
+        watchDTO = BenchmarkUtils.createWatchDTO(fountainSize);
+        patch = Json.createMergePatch(Json.createObjectBuilder()
+                .add("title", "Prime")
+                .add("price", 260000)
+                .build());
+    }
+
+    @Benchmark
+    public WatchDTO generalPatch() {
+        return patchService.applyPatch(patch, watchDTO, WatchDTO.class);
+    }
+
+    @Benchmark
+    public WatchDTO watchPatch() {
+        return patchService.applyWatchPatch(patch, watchDTO);
+    }
+
+}
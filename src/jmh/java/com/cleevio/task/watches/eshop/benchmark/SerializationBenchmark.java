@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.benchmark;
+
+import com.cleevio.task.watches.eshop.config.ObjectMapperConfiguration;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.utils.RestUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SerializationBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    private int fountainSize;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper xmlMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
+    private WatchDTO watchDTO;
+    private CollectionModel<WatchDTO> listing;
+    private byte[] json;
+    private byte[] xml;
+    private byte[] cbor;
+    private byte[] smile;
+
+    @Setup
+    public void setUp() throws IOException {
+        jsonMapper = new ObjectMapperConfiguration().objectMapper();
+        // Same XML mapper as the one used by the XML message converter
+        xmlMapper = Jackson2ObjectMapperBuilder.xml().modulesToInstall(new BlackbirdModule()).build();
+        cborMapper = ObjectMapperConfiguration.configure(new CBORMapper());
+        smileMapper = ObjectMapperConfiguration.configure(new SmileMapper());
+        watchDTO = BenchmarkUtils.createWatchDTO(fountainSize);
+        // Largest page of watch summaries returned by the listing
+        listing = CollectionModel.of(LongStream.rangeClosed(1, RestUtils.MAX_PAGE_SIZE)
+                .mapToObj(id -> new WatchDTO(id, "Prim", 250000, "Fountain watch", null, 0L))
+                .collect(Collectors.toList()));
+        json = jsonMapper.writeValueAsBytes(watchDTO);
+        xml = xmlMapper.writeValueAsBytes(watchDTO);
+        cbor = cborMapper.writeValueAsBytes(watchDTO);
+        smile = smileMapper.writeValueAsBytes(watchDTO);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws IOException {
+        return jsonMapper.writeValueAsBytes(watchDTO);
+    }
+
+    @Benchmark
+    public byte[] writeJsonListing() throws IOException {
+        return jsonMapper.writeValueAsBytes(listing);
+    }
+
+    @Benchmark
+    public byte[] writeXml() throws IOException {
+        return xmlMapper.writeValueAsBytes(watchDTO);
+    }
+
+    @Benchmark
+    public byte[] writeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(watchDTO);
+    }
+
+    @Benchmark
+    public byte[] writeSmile() throws IOException {
+        return smileMapper.writeValueAsBytes(watchDTO);
+    }
+
+    @Benchmark
+    public WatchDTO readJson() throws IOException {
+        return jsonMapper.readValue(json, WatchDTO.class);
+    }
+
+    @Benchmark
+    public WatchDTO readXml() throws IOException {
+        return xmlMapper.readValue(xml, WatchDTO.class);
+    }
+
+    @Benchmark
+    public WatchDTO readCbor() throws IOException {
+        return cborMapper.readValue(cbor, WatchDTO.class);
+    }
+
+    @Benchmark
+    public WatchDTO readSmile() throws IOException {
+        return smileMapper.readValue(smile, WatchDTO.class);
+    }
+
+}
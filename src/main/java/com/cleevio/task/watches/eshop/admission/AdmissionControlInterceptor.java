@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import com.cleevio.task.watches.eshop.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Requests are rejected up front when the client exceeds its rate or the expensive ones would exhaust the connection
+// pool, instead of being queued behind each other until they time out
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".PERMIT";
+    private static final String REJECTED_METRIC = "watches.admission.rejected";
+    // Permits are released as soon as a running expensive request completes
+    private static final Duration BULKHEAD_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final RateLimiter rateLimiter;
+    private final Set<String> apiKeys;
+    private final Semaphore bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionControlInterceptor(RateLimiter rateLimiter,
+                                       Collection<String> apiKeys,
+                                       int maxConcurrent,
+                                       MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Asynchronous export is dispatched again to complete, it was admitted by its first dispatch
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        RequestCost cost = ((HandlerMethod) handler).getMethodAnnotation(RequestCost.class);
+        // Permit is taken first, so a request rejected for the overloaded server doesn't cost the client its tokens
+        boolean bulkheaded = cost != null && cost.bulkhead();
+        if (bulkheaded && !bulkhead.tryAcquire()) {
+            meterRegistry.counter(REJECTED_METRIC, "reason", "bulkhead").increment();
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many expensive requests are being processed.", BULKHEAD_RETRY_AFTER);
+        }
+        boolean admitted = false;
+        try {
+            long wait = rateLimiter.tryConsume(getClientKey(request), (cost != null) ? cost.value() : 1);
+            if (wait > 0) {
+                meterRegistry.counter(REJECTED_METRIC, "reason", "rate-limit").increment();
+                throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Rate limit of the client was exceeded.", Duration.ofMillis(wait));
+            }
+            admitted = true;
+        } finally {
+            // Rejected request never completes through afterCompletion, so its permit is returned right away
+            if (bulkheaded && !admitted) {
+                bulkhead.release();
+            }
+        }
+        if (bulkheaded) {
+            request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+                                HttpServletResponse response,
+                                Object handler,
+                                Exception exception) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            bulkhead.release();
+        }
+    }
+
+    public int getAvailablePermits() {
+        return bulkhead.availablePermits();
+    }
+
+    // Only configured keys get a bucket of their own, a client sending a new key with every request would be never
+    // limited and would evict buckets of other clients
+    private String getClientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        return (apiKey != null && apiKeys.contains(apiKey)) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+
+}
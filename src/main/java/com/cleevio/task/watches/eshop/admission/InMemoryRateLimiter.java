@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token bucket kept as the time the bucket of the client is full again (generic cell rate algorithm), so it's updated
+// by a single compare-and-set without locking or a refill thread
+public class InMemoryRateLimiter implements RateLimiter {
+
+    private final long capacity;
+    private final long tokenInterval;
+    private final LongSupplier nanoTime;
+    private final Cache<String, AtomicLong> buckets;
+
+    public InMemoryRateLimiter(long capacity, double refillRate, long maximumClients, LongSupplier nanoTime) {
+        this.capacity = capacity;
+        this.tokenInterval = (long) (TimeUnit.SECONDS.toNanos(1) / refillRate);
+        this.nanoTime = nanoTime;
+        // Bucket left idle until it's refilled is the same as a new one
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumClients)
+                .expireAfterAccess(Duration.ofNanos(capacity * tokenInterval))
+                .build();
+    }
+
+    @Override
+    public long tryConsume(String key, int tokens) {
+        long burst = capacity * tokenInterval;
+        long increment = Math.min(tokens, capacity) * tokenInterval;
+        AtomicLong fullAt = buckets.get(key, ignored -> new AtomicLong(nanoTime.getAsLong()));
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + increment;
+            long wait = next - burst - now;
+            if (wait > 0) {
+                return TimeUnit.NANOSECONDS.toMillis(wait + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+}
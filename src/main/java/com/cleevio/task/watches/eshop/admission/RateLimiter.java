@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+public interface RateLimiter {
+
+    /**
+     * Takes tokens from the bucket of the client, if it has enough of them.
+     *
+     * @param key key of the client
+     * @param tokens number of tokens requested
+     * @return 0 if the tokens were taken, otherwise milliseconds to wait until the bucket has them
+     */
+    long tryConsume(String key, int tokens);
+
+}
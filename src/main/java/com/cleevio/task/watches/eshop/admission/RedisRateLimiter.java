@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+// Same algorithm as InMemoryRateLimiter run atomically by a script, so buckets are shared by all application nodes
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String KEY_PREFIX = "watches:rate-limit:";
+    // Times are in microseconds of the Redis clock, so nodes with skewed clocks agree on them
+    private static final String SCRIPT = String.join("\n",
+            "local time = redis.call('TIME')",
+            "local now = tonumber(time[1]) * 1000000 + tonumber(time[2])",
+            "local interval = tonumber(ARGV[1])",
+            "local full_at = math.max(tonumber(redis.call('GET', KEYS[1])) or now, now) + tonumber(ARGV[3]) * interval",
+            "local wait = full_at - tonumber(ARGV[2]) * interval - now",
+            "if wait > 0 then return math.ceil(wait / 1000) end",
+            "redis.call('SET', KEYS[1], string.format('%.0f', full_at), 'PX', math.ceil((full_at - now) / 1000))",
+            "return 0");
+
+    private final RedisCommands<String, String> commands;
+    private final String digest;
+    private final long capacity;
+    private final long tokenInterval;
+
+    public RedisRateLimiter(StatefulRedisConnection<String, String> connection, long capacity, double refillRate) {
+        this.commands = connection.sync();
+        this.digest = commands.digest(SCRIPT);
+        this.capacity = capacity;
+        this.tokenInterval = (long) (TimeUnit.SECONDS.toMicros(1) / refillRate);
+    }
+
+    @Override
+    public long tryConsume(String key, int tokens) {
+        String[] keys = { KEY_PREFIX + key };
+        String[] args = { Long.toString(tokenInterval), Long.toString(capacity),
+                Long.toString(Math.min(tokens, capacity)) };
+        try {
+            try {
+                return commands.<Long>evalsha(digest, ScriptOutputType.INTEGER, keys, args);
+            } catch (RedisNoScriptException e) {
+                // Script is cached by Redis from now on until its restart
+                return commands.<Long>eval(SCRIPT, ScriptOutputType.INTEGER, keys, args);
+            }
+        } catch (RedisException e) {
+            // Requests are admitted while Redis is unavailable rather than failing the whole shop
+            log.debug("Rate limit of {} couldn't be checked.", key, e);
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Tokens taken from the rate limit of the client by a request of the endpoint, endpoints without it cost one token
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RequestCost {
+
+    int value() default 1;
+
+    // Request holds a permit of the bulkhead limiting expensive requests executed at once
+    boolean bulkhead() default false;
+
+}
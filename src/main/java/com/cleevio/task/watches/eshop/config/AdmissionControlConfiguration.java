@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.admission.AdmissionControlInterceptor;
+import com.cleevio.task.watches.eshop.admission.InMemoryRateLimiter;
+import com.cleevio.task.watches.eshop.admission.RateLimiter;
+import com.cleevio.task.watches.eshop.admission.RedisRateLimiter;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@Configuration
+public class AdmissionControlConfiguration implements WebMvcConfigurer {
+
+    private static final String BACKEND_PROPERTY = "watches.admission.rate-limit.backend";
+
+    private final ObjectProvider<AdmissionControlInterceptor> admissionControlInterceptor;
+
+    public AdmissionControlConfiguration(ObjectProvider<AdmissionControlInterceptor> admissionControlInterceptor) {
+        this.admissionControlInterceptor = admissionControlInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor.getObject()).addPathPatterns("/api/**");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "memory", matchIfMissing = true)
+    public RateLimiter inMemoryRateLimiter(@Value("${watches.admission.rate-limit.capacity}") long capacity,
+                                           @Value("${watches.admission.rate-limit.refill-rate}") double refillRate,
+                                           @Value("${watches.admission.rate-limit.maximum-clients}")
+                                                   long maximumClients) {
+        return new InMemoryRateLimiter(capacity, refillRate, maximumClients, System::nanoTime);
+    }
+
+    // Commands time out quickly, a slow Redis doesn't hold up requests it would admit anyway
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "redis")
+    public RedisClient rateLimitRedisClient(@Value("${watches.admission.rate-limit.redis.url}") String url,
+                                            @Value("${watches.admission.rate-limit.redis.timeout}") Duration timeout) {
+        RedisURI uri = RedisURI.create(url);
+        uri.setTimeout(timeout);
+        return RedisClient.create(uri);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "redis")
+    public StatefulRedisConnection<String, String> rateLimitRedisConnection(RedisClient rateLimitRedisClient) {
+        return rateLimitRedisClient.connect();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "redis")
+    public RateLimiter redisRateLimiter(StatefulRedisConnection<String, String> rateLimitRedisConnection,
+                                        @Value("${watches.admission.rate-limit.capacity}") long capacity,
+                                        @Value("${watches.admission.rate-limit.refill-rate}") double refillRate) {
+        return new RedisRateLimiter(rateLimitRedisConnection, capacity, refillRate);
+    }
+
+    @Bean
+    public AdmissionControlInterceptor admissionControlInterceptor(
+            RateLimiter rateLimiter,
+            MeterRegistry meterRegistry,
+            @Value("${watches.admission.rate-limit.api-keys}") String[] apiKeys,
+            @Value("${watches.admission.bulkhead.max-concurrent}") int maxConcurrent) {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(rateLimiter, Arrays.asList(apiKeys),
+                maxConcurrent, meterRegistry);
+        Gauge.builder("watches.admission.bulkhead.available", interceptor,
+                AdmissionControlInterceptor::getAvailablePermits)
+                .description("Number of expensive requests that can still be admitted")
+                .register(meterRegistry);
+        return interceptor;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String WATCHES = "watches";
+    public static final String WATCH_SUMMARIES = "watchSummaries";
+
+    // Estimated size in bytes of a cached watch without its fountain image
+    private static final int WATCH_WEIGHT = 512;
+
+    @Bean
+    public CacheManager cacheManager(@Value("${watches.cache.maximum-weight}") long maximumWeight,
+                                     @Value("${watches.cache.time-to-live}") Duration timeToLive) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher(CacheConfiguration::weigh)
+                .expireAfterWrite(timeToLive)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCacheNames(List.of(WATCHES, WATCH_SUMMARIES));
+        // Evictions are deferred until the transaction which modified the watch is committed
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private static int weigh(Object key, Object value) {
+        if (value instanceof WatchDTO && ((WatchDTO) value).getFountain() != null) {
+            return WATCH_WEIGHT + ((WatchDTO) value).getFountain().length;
+        }
+        return WATCH_WEIGHT;
+    }
+
+}
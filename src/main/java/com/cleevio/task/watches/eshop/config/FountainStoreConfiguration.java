@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.storage.FileSystemFountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import com.cleevio.task.watches.eshop.storage.S3FountainStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.List;
+
+@Configuration
+public class FountainStoreConfiguration implements WebMvcConfigurer {
+
+    private static final String STORE_TYPE = "watches.fountain.store.type";
+
+    @Bean
+    @ConditionalOnProperty(name = STORE_TYPE, havingValue = "filesystem", matchIfMissing = true)
+    public FountainStore fileSystemFountainStore(@Value("${watches.fountain.store.path}") String path) {
+        return new FileSystemFountainStore(Paths.get(path));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = STORE_TYPE, havingValue = "s3")
+    public S3Client s3Client(@Value("${watches.fountain.store.s3.endpoint:}") String endpoint,
+                             @Value("${watches.fountain.store.s3.region}") String region) {
+        // Credentials are resolved by the default AWS provider chain, e.g. from environment variables
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = STORE_TYPE, havingValue = "s3")
+    public FountainStore s3FountainStore(S3Client s3Client,
+                                         @Value("${watches.fountain.store.s3.bucket}") String bucket) {
+        return new S3FountainStore(s3Client, bucket);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> (converter instanceof ResourceHttpMessageConverter)
+                ? new FileChannelResourceHttpMessageConverter() : converter);
+    }
+
+}
@@ -6,8 +6,10 @@ package com.cleevio.task.watches.eshop.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -18,11 +20,23 @@ public class ObjectMapperConfiguration {
     @Bean
     @Primary
     public ObjectMapper objectMapper() {
-        return new ObjectMapper()
-                .setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL)
+        return configure(new ObjectMapper());
+    }
+
+    // Registered by Spring Boot also to the mappers it builds itself, e.g. the one of the XML message converter
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // Binary formats share the configuration of the JSON mapper
+    public static <T extends ObjectMapper> T configure(T objectMapper) {
+        objectMapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL)
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                // Blackbird found among the modules accesses properties by generated lambdas instead of reflection
                 .findAndRegisterModules();
+        return objectMapper;
     }
 
 }
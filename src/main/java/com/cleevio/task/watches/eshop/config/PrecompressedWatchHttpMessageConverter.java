@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+// Single watches are written from a cache of serialized and gzipped representations, keyed by their version
+public class PrecompressedWatchHttpMessageConverter implements HttpMessageConverter<WatchDTO> {
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String WILDCARD = "*";
+    private static final String QUALITY = "q";
+
+    private final List<HttpMessageConverter<?>> delegates;
+    private final Cache<String, Representation> representations;
+    private final List<MediaType> compressibleMediaTypes;
+    private final long compressionThreshold;
+
+    public PrecompressedWatchHttpMessageConverter(List<HttpMessageConverter<?>> delegates,
+                                                  Cache<String, Representation> representations,
+                                                  List<MediaType> compressibleMediaTypes,
+                                                  long compressionThreshold) {
+        this.delegates = delegates;
+        this.representations = representations;
+        this.compressibleMediaTypes = compressibleMediaTypes;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return WatchDTO.class.equals(clazz) && getDelegate(mediaType).isPresent();
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        if (!WatchDTO.class.equals(clazz)) {
+            return Collections.emptyList();
+        }
+        return delegates.stream().flatMap(delegate -> delegate.getSupportedMediaTypes(clazz).stream())
+                .distinct().collect(Collectors.toList());
+    }
+
+    @Override
+    public WatchDTO read(Class<? extends WatchDTO> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Watches are read by the Jackson converters.", inputMessage);
+    }
+
+    @Override
+    public void write(WatchDTO watchDTO, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        String key = getKey(watchDTO, contentType);
+        Representation representation = (key != null)
+                ? representations.get(key, ignored -> serialize(watchDTO, contentType))
+                : serialize(watchDTO, contentType);
+
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.setContentType(representation.contentType);
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        // Already compressed response is left as it is by the container
+        byte[] body = representation.identity;
+        if (representation.gzip != null && acceptsGzip()) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            body = representation.gzip;
+        }
+        headers.setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+    public static int weigh(String key, Representation representation) {
+        return key.length() + representation.identity.length
+                + ((representation.gzip != null) ? representation.gzip.length : 0);
+    }
+
+    private static String getKey(WatchDTO watchDTO, MediaType contentType) {
+        // Links depend on the request URI and the fountain is included only on demand, so both are part of the key
+        Optional<Link> self = watchDTO.getLink(IanaLinkRelations.SELF);
+        if (watchDTO.getVersion() == null || self.isEmpty() || contentType == null) {
+            return null;
+        }
+        return String.join(" ", contentType.toString(), self.get().getHref(), watchDTO.getVersion().toString(),
+                String.valueOf(watchDTO.getFountain() != null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Representation serialize(WatchDTO watchDTO, MediaType contentType) {
+        HttpMessageConverter<WatchDTO> delegate = (HttpMessageConverter<WatchDTO>) getDelegate(contentType)
+                .orElseThrow(() -> new HttpMessageNotWritableException("No converter for " + contentType));
+        BufferedOutputMessage buffer = new BufferedOutputMessage();
+        try {
+            delegate.write(watchDTO, contentType, buffer);
+        } catch (IOException e) {
+            throw new HttpMessageNotWritableException("Watch couldn't be serialized.", e);
+        }
+        MediaType writtenType = Optional.ofNullable(buffer.headers.getContentType()).orElse(contentType);
+        byte[] identity = buffer.body.toByteArray();
+        byte[] gzip = (identity.length >= compressionThreshold && isCompressible(writtenType)) ? gzip(identity) : null;
+        return new Representation(writtenType, identity, gzip);
+    }
+
+    private Optional<HttpMessageConverter<?>> getDelegate(MediaType mediaType) {
+        return delegates.stream().filter(delegate -> delegate.canWrite(WatchDTO.class, mediaType)).findFirst();
+    }
+
+    private boolean isCompressible(MediaType mediaType) {
+        return compressibleMediaTypes.stream().anyMatch(type -> type.isCompatibleWith(mediaType));
+    }
+
+    private static boolean acceptsGzip() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        // Explicit gzip coding takes precedence over the wildcard, either of them refuses gzip by zero quality
+        Double gzipQuality = null;
+        Double wildcardQuality = null;
+        Enumeration<String> acceptEncodings = ((ServletRequestAttributes) attributes).getRequest()
+                .getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (acceptEncodings.hasMoreElements()) {
+            for (String coding : acceptEncodings.nextElement().split(",")) {
+                String[] parameters = coding.split(";");
+                String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+                if (GZIP.equals(name) || X_GZIP.equals(name)) {
+                    gzipQuality = getQuality(parameters);
+                } else if (WILDCARD.equals(name)) {
+                    wildcardQuality = getQuality(parameters);
+                }
+            }
+        }
+        Double quality = (gzipQuality != null) ? gzipQuality : wildcardQuality;
+        return quality != null && quality > 0;
+    }
+
+    private static double getQuality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String[] parameter = parameters[i].split("=", 2);
+            if (parameter.length == 2 && QUALITY.equalsIgnoreCase(parameter[0].trim())) {
+                try {
+                    return Double.parseDouble(parameter[1].trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static byte[] gzip(byte[] identity) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(identity.length / 2);
+        try (OutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(identity);
+        } catch (IOException e) {
+            throw new HttpMessageNotWritableException("Watch couldn't be compressed.", e);
+        }
+        return output.toByteArray();
+    }
+
+    public static final class Representation {
+
+        private final MediaType contentType;
+        private final byte[] identity;
+        private final byte[] gzip;
+
+        private Representation(MediaType contentType, byte[] identity, byte[] gzip) {
+            this.contentType = contentType;
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+
+    }
+
+    private static final class BufferedOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+    }
+
+}
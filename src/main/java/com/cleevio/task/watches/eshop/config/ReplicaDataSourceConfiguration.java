@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.datasource.ReadYourWritesFilter;
+import com.cleevio.task.watches.eshop.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "watches.datasource.routing", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    // Unreachable replica is given up quickly, the read is then served by the primary
+    private static final Duration REPLICA_CONNECTION_TIMEOUT = Duration.ofSeconds(1);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             MeterRegistry meterRegistry,
+                                                             @Value("${watches.datasource.replica.urls}")
+                                                                     List<String> urls,
+                                                             @Value("${watches.datasource.replica.max-lag}")
+                                                                     Duration maxLag) {
+        // Replica pools are sized and tuned like the primary one
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url);
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            config.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT.toMillis());
+            // Application starts even with a replica down, it's used once the health check finds it working
+            config.setInitializationFailTimeout(-1);
+            config.setMetricRegistry(meterRegistry);
+            replicas.add(new HikariDataSource(config));
+        }
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag);
+        Gauge.builder("watches.datasource.replicas.healthy", dataSource, ReplicaRoutingDataSource::getHealthyReplicas)
+                .description("Number of replicas serving read-only transactions")
+                .register(meterRegistry);
+        return dataSource;
+    }
+
+    // Connection is taken by the first statement, when the read-only flag of the transaction is already known
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${watches.datasource.replica.read-your-writes-window}")
+                                                             Duration window) {
+        return new ReadYourWritesFilter(window, Clock.systemUTC());
+    }
+
+}
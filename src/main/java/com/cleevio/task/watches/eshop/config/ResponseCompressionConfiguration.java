@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import com.cleevio.task.watches.eshop.config.PrecompressedWatchHttpMessageConverter.Representation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class ResponseCompressionConfiguration {
+
+    public static final String WATCH_REPRESENTATIONS = "watchRepresentations";
+
+    // Converter is installed once all WebMvcConfigurers extended the converters, so it precedes the hypermedia ones
+    @Bean
+    public static BeanPostProcessor precompressedWatchConverterInstaller(Environment environment,
+                                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RequestMappingHandlerAdapter) {
+                    List<HttpMessageConverter<?>> converters = ((RequestMappingHandlerAdapter) bean)
+                            .getMessageConverters();
+                    converters.add(0, createConverter(new ArrayList<>(converters), environment,
+                            meterRegistry.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static PrecompressedWatchHttpMessageConverter createConverter(List<HttpMessageConverter<?>> delegates,
+                                                                          Environment environment,
+                                                                          MeterRegistry meterRegistry) {
+        Cache<String, Representation> representations = Caffeine.newBuilder()
+                .maximumWeight(environment.getRequiredProperty("watches.representation-cache.maximum-weight",
+                        Long.class))
+                .weigher(PrecompressedWatchHttpMessageConverter::weigh)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, representations, WATCH_REPRESENTATIONS);
+
+        // Representations are compressed by the same rules as the other responses compressed by the container
+        boolean compressionEnabled = environment.getProperty("server.compression.enabled", Boolean.class, false);
+        DataSize threshold = environment.getProperty("server.compression.min-response-size", DataSize.class,
+                DataSize.ofKilobytes(2));
+        List<MediaType> compressibleMediaTypes = MediaType.parseMediaTypes(
+                List.of(environment.getProperty("server.compression.mime-types", String[].class, new String[0])));
+        return new PrecompressedWatchHttpMessageConverter(delegates, representations, compressibleMediaTypes,
+                compressionEnabled ? threshold.toBytes() : Long.MAX_VALUE);
+    }
+
+}
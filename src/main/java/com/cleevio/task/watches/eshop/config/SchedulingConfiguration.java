@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Relay of watch changes and replica checks run on the scheduler auto-configured by Spring Boot, its pool is sized by
+// spring.task.scheduling.pool.size
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -4,24 +4,52 @@
 
 package com.cleevio.task.watches.eshop.controller;
 
+import com.cleevio.task.watches.eshop.admission.RequestCost;
+import com.cleevio.task.watches.eshop.datasource.ReplicaRoutingContext;
+import com.cleevio.task.watches.eshop.dto.BatchResultDTO;
+import com.cleevio.task.watches.eshop.dto.FountainDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTOOpenApi;
+import com.cleevio.task.watches.eshop.dto.WatchSyncDTO;
+import com.cleevio.task.watches.eshop.hateoas.WatchLinkFactory;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import com.cleevio.task.watches.eshop.repository.search.WatchSort;
+import com.cleevio.task.watches.eshop.service.FountainService;
 import com.cleevio.task.watches.eshop.service.PatchService;
+import com.cleevio.task.watches.eshop.service.WatchBatchService;
+import com.cleevio.task.watches.eshop.service.WatchChangeStream;
 import com.cleevio.task.watches.eshop.service.WatchService;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.info.Contact;
 import io.swagger.v3.oas.annotations.info.Info;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.servers.Server;
 import lombok.AllArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -29,19 +57,44 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.json.JsonMergePatch;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
+import static com.cleevio.task.watches.eshop.config.BinaryFormatConfiguration.APPLICATION_SMILE_VALUE;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.DEFAULT_PAGE_SIZE;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.FOUNTAIN;
 import static com.cleevio.task.watches.eshop.utils.RestUtils.checkWatchID;
-import static com.cleevio.task.watches.eshop.utils.RestUtils.getWatchDTOWithLinks;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.checkWatchVersion;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.getExpectedVersion;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.getPageSize;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.matchesETag;
 import static com.cleevio.task.watches.eshop.utils.RestUtils.mustExist;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.withETag;
+import static com.cleevio.task.watches.eshop.utils.RestUtils.withWeakETag;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
@@ -63,32 +116,250 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @AllArgsConstructor
 public class WatchController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final int EXPORT_FLUSH_SIZE = 100;
+
     private final WatchService watchService;
     private final PatchService patchService;
+    private final WatchBatchService watchBatchService;
+    private final ObjectMapper objectMapper;
+    private final WatchLinkFactory watchLinkFactory;
+    private final FountainService fountainService;
+    private final WatchChangeStream watchChangeStream;
 
-    @Operation(summary = "Retrieves all watches")
-    @ApiResponse(responseCode = "200", description = "Watches were successfully retrieved.")
-    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+    @Operation(summary = "Retrieves a page of watches ordered by id.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Watches were successfully retrieved."),
+            @ApiResponse(responseCode = "400", description = "Invalid page parameters were provided.",
+                    content = @Content)
+    })
+    @RequestCost(value = 20, bulkhead = true)
+    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
     @ResponseStatus(HttpStatus.OK)
-    public CollectionModel<WatchDTO> getAllWatches() {
+    public CollectionModel<WatchDTO> getAllWatches(@Parameter(description = "Id of the last watch of previous page.")
+                                                   @RequestParam(required = false) Long after,
+                                                   @Parameter(description = "Maximum number of watches in the page.")
+                                                   @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) Integer limit,
+                                                   @Parameter(description = "Include fountain images in the response.")
+                                                   @RequestParam(defaultValue = "false") boolean inline) {
+        int pageSize = getPageSize(limit);
+        // One extra watch is fetched to find out whether there is a next page
+        List<WatchDTO> watches = watchService.getWatches(after, pageSize + 1, inline);
+        List<WatchDTO> page = watches.subList(0, Math.min(watches.size(), pageSize));
+
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(WatchController.class).getAllWatches(after, pageSize, inline)).withSelfRel());
+        if (watches.size() > pageSize) {
+            Long lastId = page.get(page.size() - 1).getId();
+            links.add(linkTo(methodOn(WatchController.class).getAllWatches(lastId, pageSize, inline))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+
+        WatchLinkFactory.WatchLinks watchLinks = watchLinkFactory.forCurrentRequest();
         return CollectionModel.of(
-                watchService.getAllWatches().stream().map(watchDTO -> getWatchDTOWithLinks(watchDTO.getId(), watchDTO))
+                page.stream().map(watchDTO -> watchLinks.withLinks(watchDTO.getId(), watchDTO))
                         .collect(Collectors.toList()),
-                linkTo(methodOn(WatchController.class).getAllWatches()).withSelfRel()
+                links
         );
     }
 
+    @Operation(summary = "Retrieves watches modified and ids of watches deleted since provided time.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Modified watches were successfully retrieved."),
+            @ApiResponse(responseCode = "400", description = "Invalid time or page parameters were provided.",
+                    content = @Content)
+    })
+    @RequestCost(value = 10, bulkhead = true)
+    @GetMapping(params = "modifiedSince", produces = { MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    public WatchSyncDTO getModifiedWatches(@Parameter(description = "Time of the last sync in ISO-8601 format.")
+                                           @RequestParam Instant modifiedSince,
+                                           @Parameter(description = "Id of the last watch of previous page.")
+                                           @RequestParam(required = false) Long after,
+                                           @Parameter(description = "Sync point of the first page.")
+                                           @RequestParam(required = false) Instant syncedAt,
+                                           @Parameter(description = "Maximum number of watches in the page.")
+                                           @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) Integer limit) {
+        int pageSize = getPageSize(limit);
+        WatchSyncDTO sync = watchService.getModifiedWatches(modifiedSince, after, syncedAt, pageSize);
+
+        WatchLinkFactory.WatchLinks watchLinks = watchLinkFactory.forCurrentRequest();
+        WatchSyncDTO syncWithLinks = sync.toBuilder()
+                .watches(sync.getWatches().stream().map(watchDTO -> watchLinks.withLinks(watchDTO.getId(), watchDTO))
+                        .collect(Collectors.toList()))
+                .build();
+        syncWithLinks.add(linkTo(methodOn(WatchController.class)
+                .getModifiedWatches(modifiedSince, after, syncedAt, pageSize))
+                .withSelfRel());
+        if (sync.hasNext()) {
+            syncWithLinks.add(linkTo(methodOn(WatchController.class)
+                    .getModifiedWatches(sync.getNextModifiedSince(), sync.getNextAfter(), sync.getSyncedAt(), pageSize))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+        return syncWithLinks;
+    }
+
+    @Operation(summary = "Searches watches by text in title and description and by price.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Matching watches were successfully retrieved."),
+            @ApiResponse(responseCode = "400", description = "Invalid search or page parameters were provided.",
+                    content = @Content)
+    })
+    @RequestCost(value = 20, bulkhead = true)
+    @GetMapping(value = "search", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    public CollectionModel<WatchDTO> searchWatches(@Parameter(description = "Words searched in title and description.")
+                                                   @RequestParam(required = false) String q,
+                                                   @Parameter(description = "Minimal price of the watch.")
+                                                   @RequestParam(required = false) Integer minPrice,
+                                                   @Parameter(description = "Maximal price of the watch.")
+                                                   @RequestParam(required = false) Integer maxPrice,
+                                                   @Parameter(description = "Order of watches: id, price or -price.")
+                                                   @RequestParam(defaultValue = "id") String sort,
+                                                   @Parameter(description = "Id of the last watch of previous page.")
+                                                   @RequestParam(required = false) Long after,
+                                                   @Parameter(description = "Price of the last watch of previous page.")
+                                                   @RequestParam(required = false) Integer afterPrice,
+                                                   @Parameter(description = "Maximum number of watches in the page.")
+                                                   @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) Integer limit) {
+        WatchSort watchSort = WatchSort.of(sort).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Watches can be sorted by id, price or -price."));
+        if (watchSort.isByPrice() && after != null && afterPrice == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Price of the last watch must be provided.");
+        }
+        int pageSize = getPageSize(limit);
+        WatchSearchCriteria criteria = WatchSearchCriteria.builder()
+                .query(q)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .sort(watchSort)
+                .afterId(after)
+                .afterPrice(watchSort.isByPrice() ? afterPrice : null)
+                .build();
+        // One extra watch is fetched to find out whether there is a next page
+        List<WatchDTO> watches = watchService.searchWatches(criteria, pageSize + 1);
+        List<WatchDTO> page = watches.subList(0, Math.min(watches.size(), pageSize));
+
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(WatchController.class)
+                .searchWatches(q, minPrice, maxPrice, sort, after, afterPrice, pageSize)).withSelfRel());
+        if (watches.size() > pageSize) {
+            WatchDTO last = page.get(page.size() - 1);
+            Integer lastPrice = watchSort.isByPrice() ? last.getPrice() : null;
+            links.add(linkTo(methodOn(WatchController.class)
+                    .searchWatches(q, minPrice, maxPrice, sort, last.getId(), lastPrice, pageSize))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+
+        WatchLinkFactory.WatchLinks watchLinks = watchLinkFactory.forCurrentRequest();
+        return CollectionModel.of(
+                page.stream().map(watchDTO -> watchLinks.withLinks(watchDTO.getId(), watchDTO))
+                        .collect(Collectors.toList()),
+                links
+        );
+    }
+
+    @Operation(summary = "Exports all watches as newline delimited JSON.")
+    @ApiResponse(responseCode = "200", description = "Watches are being streamed.")
+    @RequestCost(value = 100, bulkhead = true)
+    @GetMapping(value = "export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportWatches() {
+        ObjectWriter writer = objectMapper.writerFor(WatchDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // Body is written by an async executor thread, which doesn't see the primary scope of the request
+        boolean primaryRequired = ReplicaRoutingContext.isPrimaryRequired();
+        StreamingResponseBody body = outputStream -> {
+            try (ReplicaRoutingContext.Scope ignored = ReplicaRoutingContext.usePrimary(primaryRequired);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                AtomicInteger count = new AtomicInteger();
+                watchService.exportWatches(watchDTO -> {
+                    try {
+                        writer.writeValue(generator, watchDTO);
+                        generator.writeRaw('\n');
+                        if (count.incrementAndGet() % EXPORT_FLUSH_SIZE == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    @Operation(summary = "Streams changes of watches as server-sent events.")
+    @ApiResponse(responseCode = "200", description = "Changes are being streamed.")
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getChanges(@Parameter(description = "Position of the last change seen by client.")
+                                 @RequestParam(required = false) Long since,
+                                 @Parameter(description = "Id of the last event received before reconnection.")
+                                 @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // Without a position only the changes made from now on are streamed
+        return watchChangeStream.subscribe((since != null) ? since : lastEventId);
+    }
+
     @Operation(summary = "Retrieve watch by id.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Watch with id was successfully retrieved."),
+            @ApiResponse(responseCode = "304", description = "Watch wasn't modified since provided ETag.",
+                    content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid id parameter was provided.", content = @Content),
             @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
                     content = @Content)
     })
-    @GetMapping(value = "{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
-    @ResponseStatus(HttpStatus.OK)
-    public WatchDTO getWatchById(@Parameter(description = "Id of the watch to be retrieved.") @PathVariable Long id) {
-        return getWatchDTOWithLinks(id, mustExist(watchService.getWatchById(id), id));
+    @GetMapping(value = "{id}", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<WatchDTO> getWatchById(@Parameter(description = "Id of the watch to be retrieved.")
+                                                 @PathVariable Long id,
+                                                 @Parameter(description = "Include fountain image in the response.")
+                                                 @RequestParam(defaultValue = "false") boolean inline,
+                                                 @Parameter(description = "ETag of the watch cached by client.")
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                         String ifNoneMatch) {
+        // Condition is evaluated against the summary so that fountain isn't loaded for not modified watch
+        WatchDTO watchDTO = mustExist(watchService.getWatchById(id, false), id);
+        if (matchesETag(ifNoneMatch, watchDTO.getVersion())) {
+            return withWeakETag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), watchDTO.getVersion()).build();
+        }
+        if (inline) {
+            watchDTO = mustExist(watchService.getWatchById(id, true), id);
+        }
+        return withWeakETag(ResponseEntity.ok(), watchDTO.getVersion()).body(watchLinkFactory.withLinks(id, watchDTO));
+    }
+
+    @Operation(summary = "Retrieve fountain image of watch by id.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Fountain image was successfully retrieved."),
+            @ApiResponse(responseCode = "206", description = "Requested range of fountain image was retrieved."),
+            @ApiResponse(responseCode = "304", description = "Fountain image wasn't modified.", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid id or size parameter was provided.",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
+                    content = @Content)
+    })
+    @GetMapping(value = "{id}/" + FOUNTAIN)
+    public ResponseEntity<Resource> getFountain(@Parameter(description = "Id of the watch whose image is retrieved.")
+                                                @PathVariable Long id,
+                                                @Parameter(description = "Size of the image.")
+                                                @RequestParam(defaultValue = "original") String size) {
+        FountainVariant variant = FountainVariant.of(size).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Fountain size can be original, medium or thumb."));
+        FountainDTO fountain = mustExist(watchService.getFountainById(id, variant), id);
+        // Image is streamed from the store, Range requests are answered with partial content by Spring MVC
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(fountain.getMediaType())
+                .eTag(fountain.getVariant().getKey(fountain.getHash()));
+        if (fountain.getVariant().isDerivative()) {
+            // Derivatives are requested by every listing, their URL stays the same when the fountain is replaced, so
+            // shared caches keep them and revalidate them by ETag on every use
+            builder.cacheControl(CacheControl.noCache().cachePublic());
+        }
+        return builder.body(fountain.getContent());
     }
 
     @Operation(summary = "Create a new watch.")
@@ -102,12 +373,68 @@ public class WatchController {
             @ApiResponse(responseCode = "201", description = "Watch was successfully created."),
             @ApiResponse(responseCode = "400", description = "Invalid watch was provided.", content = @Content)
     })
-    @PostMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE },
-            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+    @PostMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
     @ResponseStatus(HttpStatus.CREATED)
     public WatchDTO createWatch(@RequestBody @Valid @NotNull WatchDTO watchDTO) {
         WatchDTO newWatchDTO = watchService.saveWatch(watchDTO);
-        return getWatchDTOWithLinks(newWatchDTO.getId(), newWatchDTO);
+        return watchLinkFactory.withLinks(newWatchDTO.getId(), newWatchDTO);
+    }
+
+    @Operation(summary = "Create or update multiple watches.")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = WatchDTOOpenApi.class))),
+            @Content(mediaType = MediaType.APPLICATION_XML_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = WatchDTOOpenApi.class)))
+    })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Watches were processed, see status of each item."),
+            @ApiResponse(responseCode = "400", description = "Invalid request body was provided.", content = @Content)
+    })
+    @RequestCost(value = 50, bulkhead = true)
+    @PostMapping(value = "batch", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    public BatchResultDTO createWatches(@RequestBody @NotNull List<WatchDTO> watchDTOs) {
+        return watchBatchService.saveWatches(watchDTOs.iterator());
+    }
+
+    @Operation(summary = "Create or update multiple watches from newline delimited JSON.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Watches were processed, see status of each item."),
+            @ApiResponse(responseCode = "400", description = "Invalid request body was provided.", content = @Content)
+    })
+    @RequestCost(value = 50, bulkhead = true)
+    @PostMapping(value = "batch", consumes = APPLICATION_NDJSON_VALUE,
+            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    public BatchResultDTO createWatchesFromStream(InputStream inputStream) throws IOException {
+        // Each line is parsed on its own, so a malformed line fails only its item and the next line is read
+        ObjectReader reader = objectMapper.readerFor(WatchDTO.class);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            Iterator<String> nonBlankLines = lines.lines().filter(StringUtils::hasText).iterator();
+            return watchBatchService.saveWatches(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return nonBlankLines.hasNext();
+                }
+
+                @Override
+                public WatchDTO next() {
+                    try {
+                        return reader.readValue(nonBlankLines.next());
+                    } catch (JsonProcessingException e) {
+                        throw new RuntimeJsonMappingException(e.getOriginalMessage());
+                    }
+                }
+            });
+        }
     }
 
     @Operation(summary = "Update watch by id.")
@@ -122,20 +449,75 @@ public class WatchController {
             @ApiResponse(responseCode = "400", description = "Invalid watch or id parameter was provided.",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
-                    content = @Content)
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Watch doesn't match provided ETag.", content = @Content)
     })
-    @PutMapping(value = "{id}", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE },
-            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
-    @ResponseStatus(HttpStatus.OK)
-    public WatchDTO updateWatch(@Parameter(description = "Id of the watch to be updated or created.")
-                                    @PathVariable Long id,
-                                @RequestBody @Valid @NotNull WatchDTO watchDTO) {
+    @PutMapping(value = "{id}", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<WatchDTO> updateWatch(@Parameter(description = "Id of the watch to be updated or created.")
+                                                @PathVariable Long id,
+                                                @Parameter(description = "ETag of the watch to be updated.")
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                        String ifMatch,
+                                                @RequestBody @Valid @NotNull WatchDTO watchDTO) {
         if (watchDTO.getId() == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Watch id must not be null.");
         }
         checkWatchID(id, watchDTO.getId());
-        mustExist(watchService.getWatchById(id), id);
-        return getWatchDTOWithLinks(id, watchService.saveWatch(watchDTO));
+        WatchDTO updatedWatchDTO = mustExist(watchService.updateWatch(watchDTO, getExpectedVersion(ifMatch)), id);
+        return withETag(ResponseEntity.ok(), updatedWatchDTO.getVersion())
+                .body(watchLinkFactory.withLinks(id, updatedWatchDTO));
+    }
+
+    @Operation(summary = "Replace fountain image of watch by id.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Fountain image was successfully replaced."),
+            @ApiResponse(responseCode = "400", description = "Empty image or invalid id parameter was provided.",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Watch doesn't match provided ETag.", content = @Content),
+            @ApiResponse(responseCode = "413", description = "Fountain image is too large.", content = @Content),
+            @ApiResponse(responseCode = "415", description = "Fountain isn't a JPEG, PNG or GIF image.",
+                    content = @Content)
+    })
+    @RequestCost(10)
+    @PutMapping(value = "{id}/" + FOUNTAIN, consumes = { MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE })
+    public ResponseEntity<Void> updateFountain(@Parameter(description = "Id of the watch whose image is replaced.")
+                                               @PathVariable Long id,
+                                               @Parameter(description = "ETag of the watch to be updated.")
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                       String ifMatch,
+                                               InputStream inputStream) {
+        return saveFountain(id, ifMatch, inputStream);
+    }
+
+    @Operation(summary = "Replace fountain image of watch by id from multipart form.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Fountain image was successfully replaced."),
+            @ApiResponse(responseCode = "400", description = "Empty image or invalid id parameter was provided.",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Watch doesn't match provided ETag.", content = @Content),
+            @ApiResponse(responseCode = "413", description = "Fountain image is too large.", content = @Content),
+            @ApiResponse(responseCode = "415", description = "Fountain isn't a JPEG, PNG or GIF image.",
+                    content = @Content)
+    })
+    @RequestCost(10)
+    @PutMapping(value = "{id}/" + FOUNTAIN, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Void> uploadFountain(@Parameter(description = "Id of the watch whose image is replaced.")
+                                               @PathVariable Long id,
+                                               @Parameter(description = "ETag of the watch to be updated.")
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                       String ifMatch,
+                                               @RequestPart(FOUNTAIN) MultipartFile fountain) throws IOException {
+        try (InputStream inputStream = fountain.getInputStream()) {
+            return saveFountain(id, ifMatch, inputStream);
+        }
     }
 
     @Operation(summary = "Update watch by id.")
@@ -148,18 +530,26 @@ public class WatchController {
             @ApiResponse(responseCode = "400", description = "Invalid watch or id parameter was provided.",
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "Watch with provided id doesn't exist.",
-                    content = @Content)
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Watch doesn't match provided ETag.", content = @Content)
     })
     @PatchMapping(value = "{id}", consumes = "application/merge-patch+json",
-            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
-    @ResponseStatus(HttpStatus.OK)
-    public WatchDTO patchWatch(@Parameter(description = "Id of the watch to be updated.") @PathVariable Long id,
-                               @RequestBody @NotNull JsonMergePatch patch) {
-        WatchDTO watchDTO = mustExist(watchService.getWatchById(id), id);
-        WatchDTO patchedWatchDTO = patchService.applyPatch(patch, watchDTO, WatchDTO.class);
+            produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<WatchDTO> patchWatch(@Parameter(description = "Id of the watch to be updated.")
+                                               @PathVariable Long id,
+                                               @Parameter(description = "ETag of the watch to be updated.")
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                       String ifMatch,
+                                               @RequestBody @NotNull JsonMergePatch patch) {
+        WatchDTO watchDTO = mustExist(watchService.getWatchById(id, true), id);
+        checkWatchVersion(getExpectedVersion(ifMatch), watchDTO.getVersion());
+        WatchDTO patchedWatchDTO = patchService.applyWatchPatch(patch, watchDTO);
         checkWatchID(id, patchedWatchDTO.getId());
-        watchService.saveWatch(patchedWatchDTO);
-        return getWatchDTOWithLinks(id, patchedWatchDTO);
+        // Patched watch is written only if nobody changed it since it was read
+        WatchDTO updatedWatchDTO = mustExist(watchService.updateWatch(patchedWatchDTO, watchDTO.getVersion()), id);
+        return withETag(ResponseEntity.ok(), updatedWatchDTO.getVersion())
+                .body(watchLinkFactory.withLinks(id, updatedWatchDTO));
     }
 
     @Operation(summary = "Delete watch by id.")
@@ -172,8 +562,18 @@ public class WatchController {
     @DeleteMapping(value = "{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteWatch(@Parameter(description = "Id of the watch to be deleted.") @PathVariable Long id) {
-        mustExist(watchService.getWatchById(id), id);
-        watchService.deleteWatchById(id);
+        mustExist(watchService.deleteWatchById(id), id);
+    }
+
+    private ResponseEntity<Void> saveFountain(Long id, String ifMatch, InputStream inputStream) {
+        Long expectedVersion = getExpectedVersion(ifMatch);
+        // Image is spooled and hashed before the transaction, so a slow upload doesn't hold a database connection
+        try (FountainUpload fountain = fountainService.upload(inputStream)) {
+            Long version = mustExist(watchService.updateFountain(id, fountain, expectedVersion), id);
+            return withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), version).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Client is served by the primary for a while after its own write, so it doesn't read a replica not yet replaying it
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String WRITTEN_UNTIL_COOKIE = "watches-written-until";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long now = clock.millis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // Cookie is set before the response is committed, a failed write only costs the client its replica reads
+            Cookie cookie = new Cookie(WRITTEN_UNTIL_COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setMaxAge((int) window.toSeconds());
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        } else if (!isWithinWindow(request, now)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        try (ReplicaRoutingContext.Scope ignored = ReplicaRoutingContext.usePrimary()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private static boolean isWithinWindow(HttpServletRequest request, long now) {
+        Cookie cookie = WebUtils.getCookie(request, WRITTEN_UNTIL_COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(cookie.getValue()) > now;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.datasource;
+
+// Connections taken by the current thread inside of a primary scope come from the primary even for read-only work
+public final class ReplicaRoutingContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReplicaRoutingContext() {
+    }
+
+    public static Scope usePrimary() {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        return () -> {
+            if (previous != null) {
+                PRIMARY.set(previous);
+            } else {
+                PRIMARY.remove();
+            }
+        };
+    }
+
+    // Scope captured on the request thread is entered again by work handed over to another thread
+    public static Scope usePrimary(boolean required) {
+        return required ? usePrimary() : () -> { };
+    }
+
+    public static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+}
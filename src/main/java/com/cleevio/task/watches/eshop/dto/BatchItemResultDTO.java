@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@ToString
+@EqualsAndHashCode
+public final class BatchItemResultDTO {
+
+    private final int index;
+    private final Long id;
+    private final Status status;
+    private final List<String> errors;
+
+    public BatchItemResultDTO(int index, Long id, Status status, List<String> errors) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.errors = List.copyOf(errors);
+    }
+
+    public BatchItemResultDTO(int index, Long id, Status status) {
+        this(index, id, status, Collections.emptyList());
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @JacksonXmlElementWrapper(localName = "errors")
+    @JacksonXmlProperty(localName = "error")
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        INVALID,
+        NOT_FOUND,
+        FAILED
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.dto;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.List;
+
+@JacksonXmlRootElement(localName = "batch")
+@ToString
+@EqualsAndHashCode
+public final class BatchResultDTO {
+
+    private final List<BatchItemResultDTO> items;
+
+    public BatchResultDTO(List<BatchItemResultDTO> items) {
+        this.items = List.copyOf(items);
+    }
+
+    public long getSucceeded() {
+        return items.stream().filter(item -> item.getStatus() == BatchItemResultDTO.Status.CREATED
+                || item.getStatus() == BatchItemResultDTO.Status.UPDATED).count();
+    }
+
+    public long getFailed() {
+        return items.size() - getSucceeded();
+    }
+
+    @JacksonXmlElementWrapper(localName = "items")
+    @JacksonXmlProperty(localName = "item")
+    public List<BatchItemResultDTO> getItems() {
+        return items;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.dto;
+
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+@ToString
+@EqualsAndHashCode
+public final class FountainDTO {
+
+    private final String hash;
+    private final MediaType mediaType;
+    private final long size;
+    private final FountainVariant variant;
+    private final Resource content;
+
+    public FountainDTO(String hash, MediaType mediaType, long size, FountainVariant variant, Resource content) {
+        this.hash = hash;
+        this.mediaType = mediaType;
+        this.size = size;
+        this.variant = variant;
+        this.content = content;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public FountainVariant getVariant() {
+        return variant;
+    }
+
+    public Resource getContent() {
+        return content;
+    }
+
+}
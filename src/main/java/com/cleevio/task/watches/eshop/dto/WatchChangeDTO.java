@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.dto;
+
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.Instant;
+
+@ToString
+@EqualsAndHashCode
+public final class WatchChangeDTO {
+
+    private final Long position;
+    private final Long watchId;
+    private final WatchChangeType type;
+    private final Long version;
+    private final Instant createdAt;
+
+    public WatchChangeDTO(Long position, Long watchId, WatchChangeType type, Long version, Instant createdAt) {
+        this.position = position;
+        this.watchId = watchId;
+        this.type = type;
+        this.version = version;
+        this.createdAt = createdAt;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public Long getWatchId() {
+        return watchId;
+    }
+
+    public WatchChangeType getType() {
+        return type;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -6,8 +6,11 @@ package com.cleevio.task.watches.eshop.dto;
 
 import com.cleevio.task.watches.eshop.mapper.annotation.Default;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import org.springframework.hateoas.RepresentationModel;
@@ -18,6 +21,7 @@ import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 
 @JacksonXmlRootElement(localName = "watch")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @ToString
 @EqualsAndHashCode(callSuper = false)
 public class WatchDTO extends RepresentationModel<WatchDTO> {
@@ -39,6 +43,8 @@ public class WatchDTO extends RepresentationModel<WatchDTO> {
     @NotNull
     private final byte[] fountain;
 
+    private final Long version;
+
     @JsonCreator
     public WatchDTO(@JsonProperty("title") String title,
                     @JsonProperty("price") Integer price,
@@ -47,13 +53,19 @@ public class WatchDTO extends RepresentationModel<WatchDTO> {
         this(null, title, price, description, fountain);
     }
 
-    @Default
     public WatchDTO(Long id, String title, Integer price, String description, byte[] fountain) {
+        this(id, title, price, description, fountain, null);
+    }
+
+    @Default
+    @Builder(toBuilder = true)
+    public WatchDTO(Long id, String title, Integer price, String description, byte[] fountain, Long version) {
         this.id = id;
         this.title = title;
         this.price = price;
         this.description = description;
         this.fountain = fountain;
+        this.version = version;
     }
 
     public Long getId() {
@@ -76,4 +88,10 @@ public class WatchDTO extends RepresentationModel<WatchDTO> {
         return fountain;
     }
 
+    // Version is exposed through ETag header only
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.time.Instant;
+import java.util.List;
+
+@JacksonXmlRootElement(localName = "sync")
+@ToString
+@EqualsAndHashCode(callSuper = false)
+public class WatchSyncDTO extends RepresentationModel<WatchSyncDTO> {
+
+    private final List<WatchDTO> watches;
+    private final List<Long> deleted;
+    private final Instant syncedAt;
+    private final Instant nextModifiedSince;
+    private final Long nextAfter;
+
+    @Builder(toBuilder = true)
+    public WatchSyncDTO(List<WatchDTO> watches,
+                        List<Long> deleted,
+                        Instant syncedAt,
+                        Instant nextModifiedSince,
+                        Long nextAfter) {
+        this.watches = List.copyOf(watches);
+        this.deleted = List.copyOf(deleted);
+        this.syncedAt = syncedAt;
+        this.nextModifiedSince = nextModifiedSince;
+        this.nextAfter = nextAfter;
+    }
+
+    @JacksonXmlElementWrapper(localName = "watches")
+    @JacksonXmlProperty(localName = "watch")
+    public List<WatchDTO> getWatches() {
+        return watches;
+    }
+
+    @JacksonXmlElementWrapper(localName = "deleted")
+    @JacksonXmlProperty(localName = "id")
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    // Time to be sent as modifiedSince by the next sync, once all pages of this one are read
+    public Instant getSyncedAt() {
+        return syncedAt;
+    }
+
+    // Position of the last watch of the page is exposed through the next link only
+    @JsonIgnore
+    public Instant getNextModifiedSince() {
+        return nextModifiedSince;
+    }
+
+    @JsonIgnore
+    public Long getNextAfter() {
+        return nextAfter;
+    }
+
+    @JsonIgnore
+    public boolean hasNext() {
+        return nextAfter != null;
+    }
+
+}
@@ -4,6 +4,7 @@
 
 package com.cleevio.task.watches.eshop.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
@@ -81,6 +83,40 @@ public class GeneralExceptionHandler extends ResponseEntityExceptionHandler {
         ).atPath(request.getDescription(false)).build(), exception.getStatus());
     }
 
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Object> handleAdmissionRejected(AdmissionRejectedException exception, WebRequest request) {
+        ExceptionResponseBody responseBody = ExceptionResponseBody.builder(
+                exception.getStatus(),
+                exception.getClass().getSimpleName(),
+                exception.getReason()
+        ).atPath(request.getDescription(false)).build();
+        return ResponseEntity.status(responseBody.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(exception.getRetryAfterSeconds()))
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException exception,
+                                                                 WebRequest request) {
+        ExceptionResponseBody responseBody = ExceptionResponseBody.builder(
+                HttpStatus.PRECONDITION_FAILED,
+                exception.getClass().getSimpleName(),
+                exception.getLocalizedMessage()
+        ).atPath(request.getDescription(false)).build();
+        return new ResponseEntity<>(responseBody, responseBody.getHttpStatus());
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Object> handleMaxUploadSizeExceeded(MaxUploadSizeExceededException exception,
+                                                              WebRequest request) {
+        ExceptionResponseBody responseBody = ExceptionResponseBody.builder(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                exception.getClass().getSimpleName(),
+                exception.getLocalizedMessage()
+        ).atPath(request.getDescription(false)).build();
+        return new ResponseEntity<>(responseBody, responseBody.getHttpStatus());
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<Object> handleConstraintViolation(ConstraintViolationException exception,
                                                             WebRequest request) {
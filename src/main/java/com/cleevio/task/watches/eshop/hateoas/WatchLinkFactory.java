@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.hateoas;
+
+import com.cleevio.task.watches.eshop.controller.WatchController;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+
+import static com.cleevio.task.watches.eshop.utils.RestUtils.FOUNTAIN;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+@Component
+public class WatchLinkFactory {
+
+    public static final String WATCHES = "watches";
+    public static final String THUMBNAIL = "thumbnail";
+
+    public WatchLinks forCurrentRequest() {
+        // Request URI is resolved and the controller proxy is created only once per request
+        return new WatchLinks(
+                linkTo(WatchController.class).toUri().toString(),
+                linkTo(methodOn(WatchController.class).getAllWatches(null, null, false)).withRel(WATCHES)
+        );
+    }
+
+    public WatchDTO withLinks(Long id, WatchDTO watchDTO) {
+        return forCurrentRequest().withLinks(id, watchDTO);
+    }
+
+    public static final class WatchLinks {
+
+        private final String baseUri;
+        private final Link watchesLink;
+
+        private WatchLinks(String baseUri, Link watchesLink) {
+            this.baseUri = baseUri;
+            this.watchesLink = watchesLink;
+        }
+
+        public WatchDTO withLinks(Long id, WatchDTO watchDTO) {
+            // Watches may be shared through the cache, so the links are added to a copy
+            WatchDTO watchDTOWithLinks = new WatchDTO(
+                    watchDTO.getId(),
+                    watchDTO.getTitle(),
+                    watchDTO.getPrice(),
+                    watchDTO.getDescription(),
+                    watchDTO.getFountain(),
+                    watchDTO.getVersion()
+            );
+            String selfUri = baseUri + "/" + id;
+            return watchDTOWithLinks.add(
+                    Link.of(selfUri, IanaLinkRelations.SELF),
+                    Link.of(selfUri + "/" + FOUNTAIN, FOUNTAIN),
+                    Link.of(selfUri + "/" + FOUNTAIN + "?size=" + FountainVariant.THUMB.getValue(), THUMBNAIL),
+                    watchesLink
+            );
+        }
+
+    }
+
+}
@@ -4,15 +4,38 @@
 
 package com.cleevio.task.watches.eshop.mapper;
 
+import com.cleevio.task.watches.eshop.dto.WatchChangeDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
 import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.model.WatchChange;
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 
 @Mapper
 public interface WatchMapper {
 
-    WatchDTO watchToWatchDTO(Watch watch);
+    @Mapping(target = "fountain", source = "fountain")
+    WatchDTO watchToWatchDTO(Watch watch, byte[] fountain);
 
+    @Mapping(target = "fountain", ignore = true)
+    WatchDTO watchSummaryToWatchDTO(WatchSummary watchSummary);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "fountain", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
     Watch watchDTOToWatch(WatchDTO watchDTO);
 
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "fountain", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    void updateWatch(WatchDTO watchDTO, @MappingTarget Watch watch);
+
+    WatchChangeDTO watchChangeToWatchChangeDTO(WatchChange watchChange);
+
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.migration;
+
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import lombok.AllArgsConstructor;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static com.cleevio.task.watches.eshop.utils.ImageUtils.getImageMediaType;
+
+// Fountain content is moved from the database to FountainStore, which is why the migration is a Spring bean
+@Component
+@AllArgsConstructor
+@SuppressWarnings("checkstyle:typename")
+public class V3__MoveFountainContentToStore extends BaseJavaMigration {
+
+    private static final int FETCH_SIZE = 20;
+
+    private final FountainStore fountainStore;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE fountain ADD COLUMN media_type VARCHAR(64)");
+        }
+
+        // Images are fetched by a cursor, so only a few of them are held in memory at once
+        try (Statement select = connection.createStatement();
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE fountain SET media_type = ? WHERE hash = ?")) {
+            select.setFetchSize(FETCH_SIZE);
+            try (ResultSet fountains = select.executeQuery("SELECT hash, content FROM fountain")) {
+                int batched = 0;
+                while (fountains.next()) {
+                    String hash = fountains.getString("hash");
+                    byte[] content = fountains.getBytes("content");
+                    fountainStore.write(hash, new ByteArrayInputStream(content), content.length);
+                    update.setString(1, getImageMediaType(content).toString());
+                    update.setString(2, hash);
+                    update.addBatch();
+                    // Batch is sent with every fetched page, so it doesn't grow with the table
+                    if (++batched % FETCH_SIZE == 0) {
+                        update.executeBatch();
+                    }
+                }
+                if (batched % FETCH_SIZE != 0) {
+                    update.executeBatch();
+                }
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE fountain DROP COLUMN content");
+            statement.execute("ALTER TABLE fountain ALTER COLUMN media_type SET NOT NULL");
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// Metadata of content addressed image shared by all watches with the same fountain, content is kept by FountainStore
+@Entity
+@EqualsAndHashCode(of = "hash")
+@ToString
+public class Fountain {
+
+    // Hex encoded SHA-256 of the content, also the key of the content in FountainStore
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column
+    private Integer size;
+
+    @Column(length = 64)
+    private String mediaType;
+
+    @Column
+    private Integer referenceCount;
+
+    public Fountain() {
+    }
+
+    public Fountain(String hash, Integer size, String mediaType) {
+        this.hash = hash;
+        this.size = size;
+        this.mediaType = mediaType;
+        this.referenceCount = 1;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public Integer getReferenceCount() {
+        return referenceCount;
+    }
+
+    public void setReferenceCount(Integer referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+
+}
@@ -6,35 +6,64 @@ package com.cleevio.task.watches.eshop.model;
 
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.Lob;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 @Entity
-@EqualsAndHashCode
-@ToString
+@Table(indexes = {
+        @Index(name = "watch_price_idx", columnList = "price, id"),
+        @Index(name = "watch_fountain_idx", columnList = "fountain_hash"),
+        @Index(name = "watch_updated_idx", columnList = "updated_at, id")
+})
+@EqualsAndHashCode(exclude = "fountain")
+@ToString(exclude = "fountain")
 public class Watch {
 
+    // Pooled sequence allows Hibernate to batch inserts, unlike identity columns
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "watch_sequence")
+    @SequenceGenerator(name = "watch_sequence", sequenceName = "watch_sequence", allocationSize = 50)
     private Long id;
 
-    @Column
+    @Column(length = 256)
     private String title;
 
     @Column
     private Integer price;
 
-    @Column
+    @Column(length = 256)
     private String description;
 
-    @Lob
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "fountain_hash")
+    private Fountain fountain;
+
+    @Version
     @Column
-    private byte[] fountain;
+    private Long version;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private Instant createdAt;
+
+    // Set on every flush of a modified watch, bulk updates of WatchRepository set it explicitly
+    @UpdateTimestamp
+    @Column
+    private Instant updatedAt;
 
     public Watch() {
     }
@@ -43,7 +72,7 @@ public class Watch {
                  String title,
                  Integer price,
                  String description,
-                 byte[] fountain) {
+                 Fountain fountain) {
         this.id = id;
         this.title = title;
         this.price = price;
@@ -83,12 +112,36 @@ public class Watch {
         this.description = description;
     }
 
-    public byte[] getFountain() {
+    public Fountain getFountain() {
         return fountain;
     }
 
-    public void setFountain(byte[] fountain) {
+    public void setFountain(Fountain fountain) {
         this.fountain = fountain;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
 }
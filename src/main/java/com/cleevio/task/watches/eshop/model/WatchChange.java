@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+
+// Outbox row of a watch change, rows are inserted and positioned by native queries of WatchChangeRepository
+@Entity
+@Immutable
+@EqualsAndHashCode(of = "id")
+@ToString
+public class WatchChange {
+
+    @Id
+    private Long id;
+
+    @Column
+    private Long watchId;
+
+    @Column(length = 16)
+    @Enumerated(EnumType.STRING)
+    private WatchChangeType type;
+
+    @Column
+    private Long version;
+
+    @Column
+    private Long position;
+
+    @Column
+    private Instant createdAt;
+
+    public WatchChange() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getWatchId() {
+        return watchId;
+    }
+
+    public WatchChangeType getType() {
+        return type;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -0,0 +1,13 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.model;
+
+public enum WatchChangeType {
+
+    CREATED,
+    UPDATED,
+    DELETED
+
+}
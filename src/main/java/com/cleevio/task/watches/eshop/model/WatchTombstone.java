@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// Id of a deleted watch, rows are inserted by native queries of WatchTombstoneRepository
+@Entity
+@Immutable
+@EqualsAndHashCode(of = "watchId")
+@ToString
+public class WatchTombstone {
+
+    @Id
+    private Long watchId;
+
+    @Column
+    private Instant deletedAt;
+
+    public WatchTombstone() {
+    }
+
+    public Long getWatchId() {
+        return watchId;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+}
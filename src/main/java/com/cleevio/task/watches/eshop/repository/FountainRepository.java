@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.model.Fountain;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface FountainRepository extends JpaRepository<Fountain, String> {
+
+    @Modifying
+    @Query("UPDATE Fountain f SET f.referenceCount = f.referenceCount + 1 WHERE f.hash = :hash")
+    int incrementReferenceCount(@Param("hash") String hash);
+
+    // Concurrent upload of the same new image is resolved by the unique hash instead of failing
+    @Modifying
+    @Query(value = "INSERT INTO fountain (hash, size, media_type, reference_count) "
+            + "VALUES (:hash, :size, :mediaType, 1) "
+            + "ON CONFLICT (hash) DO UPDATE SET reference_count = fountain.reference_count + 1",
+            nativeQuery = true)
+    int insertOrIncrementReferenceCount(@Param("hash") String hash,
+                                        @Param("size") Integer size,
+                                        @Param("mediaType") String mediaType);
+
+    // Storing and removing content of the same image are exclusive until the end of the transaction
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(hashtext(:hash))", nativeQuery = true)
+    int lockContent(@Param("hash") String hash);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Fountain f SET f.referenceCount = f.referenceCount - 1 WHERE f.hash = :hash")
+    int decrementReferenceCount(@Param("hash") String hash);
+
+    @Modifying
+    @Query("DELETE FROM Fountain f WHERE f.hash = :hash AND f.referenceCount <= 0")
+    int deleteUnreferenced(@Param("hash") String hash);
+
+}
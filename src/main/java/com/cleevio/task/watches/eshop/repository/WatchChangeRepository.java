@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.model.WatchChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface WatchChangeRepository extends JpaRepository<WatchChange, Long> {
+
+    // Versions are read from the flushed watch rows, deletion is recorded before the row is deleted; rows are locked,
+    // so a change can't be followed by an earlier change of the same watch
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO watch_change (watch_id, type, version) "
+            + "SELECT id, :type, version FROM watch WHERE id IN (:watchIds) ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    int insertChanges(@Param("watchIds") Collection<Long> watchIds, @Param("type") String type);
+
+    // Relays of all instances are serialized by the lock, so positions are assigned in the order of commits
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtext('watch_change'))", nativeQuery = true)
+    boolean tryLockRelay();
+
+    @Modifying
+    @Query(value = "WITH numbered AS ("
+            + "SELECT id, nextval('watch_change_position_sequence') AS position FROM ("
+            + "SELECT id FROM watch_change WHERE position IS NULL ORDER BY id LIMIT :limit) pending) "
+            + "UPDATE watch_change c SET position = numbered.position FROM numbered WHERE c.id = numbered.id",
+            nativeQuery = true)
+    int assignPositions(@Param("limit") int limit);
+
+    List<WatchChange> findByPositionGreaterThanOrderByPositionAsc(Long position, Pageable pageable);
+
+    @Query("SELECT MIN(c.position) FROM WatchChange c")
+    Optional<Long> findFirstPosition();
+
+    @Query("SELECT MAX(c.position) FROM WatchChange c")
+    Optional<Long> findLastPosition();
+
+    @Modifying
+    @Query("DELETE FROM WatchChange c WHERE c.position IS NOT NULL AND c.createdAt < :before")
+    int deleteRelayedBefore(@Param("before") Instant before);
+
+}
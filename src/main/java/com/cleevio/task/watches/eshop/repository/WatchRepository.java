@@ -4,8 +4,106 @@
 
 package com.cleevio.task.watches.eshop.repository;
 
+import com.cleevio.task.watches.eshop.model.Fountain;
 import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.repository.projection.UpdatedWatch;
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface WatchRepository extends JpaRepository<Watch, Long>, WatchSearchRepository {
+
+    List<Watch> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Locked rows keep fountain reference counts consistent with concurrent updates of the same watches
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Watch> findByIdIn(Collection<Long> ids);
+
+    List<WatchSummary> findSummariesByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    Optional<WatchSummary> findSummaryById(Long id);
+
+    // Keyset page ordered by the modification time, watches modified at the same time are ordered by id
+    @Query("SELECT w.id AS id, w.title AS title, w.price AS price, w.description AS description, "
+            + "w.version AS version, w.updatedAt AS updatedAt FROM Watch w "
+            + "WHERE w.updatedAt >= :since AND (w.updatedAt > :since OR w.id > :after) ORDER BY w.updatedAt, w.id")
+    List<WatchSummary> findSummariesModifiedSince(@Param("since") Instant since,
+                                                  @Param("after") Long after,
+                                                  Pageable pageable);
+
+    // Modifications of transactions still running are stamped no earlier than the start of the oldest of them
+    @Query(value = "SELECT coalesce(min(xact_start), now()) FROM pg_stat_activity "
+            + "WHERE datname = current_database() AND backend_type = 'client backend' AND xact_start IS NOT NULL",
+            nativeQuery = true)
+    Instant findSyncPoint();
+
+    // Watch row is locked by the subquery, so the previous fountain is read after a concurrent update commits
+    @Query(value = "UPDATE watch w SET title = :title, price = :price, description = :description, "
+            + "fountain_hash = :fountainHash, version = w.version + 1, updated_at = now() "
+            + "FROM (SELECT fountain_hash FROM watch WHERE id = :id FOR UPDATE) previous WHERE w.id = :id "
+            + "RETURNING previous.fountain_hash AS \"previousFountainHash\", w.version AS \"version\"",
+            nativeQuery = true)
+    Optional<UpdatedWatch> updateWatch(@Param("id") Long id,
+                                       @Param("title") String title,
+                                       @Param("price") Integer price,
+                                       @Param("description") String description,
+                                       @Param("fountainHash") String fountainHash);
+
+    @Query(value = "UPDATE watch w SET title = :title, price = :price, description = :description, "
+            + "fountain_hash = :fountainHash, version = w.version + 1, updated_at = now() "
+            + "FROM (SELECT fountain_hash FROM watch WHERE id = :id FOR UPDATE) previous "
+            + "WHERE w.id = :id AND w.version = :version "
+            + "RETURNING previous.fountain_hash AS \"previousFountainHash\", w.version AS \"version\"",
+            nativeQuery = true)
+    Optional<UpdatedWatch> updateWatch(@Param("id") Long id,
+                                       @Param("title") String title,
+                                       @Param("price") Integer price,
+                                       @Param("description") String description,
+                                       @Param("fountainHash") String fountainHash,
+                                       @Param("version") Long version);
+
+    @Query(value = "UPDATE watch w SET fountain_hash = :fountainHash, version = w.version + 1, updated_at = now() "
+            + "FROM (SELECT fountain_hash FROM watch WHERE id = :id FOR UPDATE) previous WHERE w.id = :id "
+            + "RETURNING previous.fountain_hash AS \"previousFountainHash\", w.version AS \"version\"",
+            nativeQuery = true)
+    Optional<UpdatedWatch> updateFountain(@Param("id") Long id,
+                                          @Param("fountainHash") String fountainHash);
+
+    @Query(value = "UPDATE watch w SET fountain_hash = :fountainHash, version = w.version + 1, updated_at = now() "
+            + "FROM (SELECT fountain_hash FROM watch WHERE id = :id FOR UPDATE) previous "
+            + "WHERE w.id = :id AND w.version = :version "
+            + "RETURNING previous.fountain_hash AS \"previousFountainHash\", w.version AS \"version\"",
+            nativeQuery = true)
+    Optional<UpdatedWatch> updateFountain(@Param("id") Long id,
+                                          @Param("fountainHash") String fountainHash,
+                                          @Param("version") Long version);
+
+    @Query(value = "DELETE FROM watch WHERE id = :id RETURNING fountain_hash", nativeQuery = true)
+    Optional<String> deleteWatchById(@Param("id") Long id);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT w FROM Watch w JOIN FETCH w.fountain ORDER BY w.id")
+    Stream<Watch> streamAllOrderById();
+
+    @Query("SELECT f FROM Watch w JOIN w.fountain f WHERE w.id = :id")
+    Optional<Fountain> findFountainById(@Param("id") Long id);
 
-public interface WatchRepository extends JpaRepository<Watch, Long> {
 }
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+
+import java.util.List;
+
+public interface WatchSearchRepository {
+
+    List<WatchSummary> searchSummaries(WatchSearchCriteria criteria, int limit);
+
+}
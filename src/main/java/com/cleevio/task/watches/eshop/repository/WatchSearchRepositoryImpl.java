@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+public class WatchSearchRepositoryImpl implements WatchSearchRepository {
+
+    // Must stay the same as the expression of watch_search_idx index created by V1 migration
+    private static final String SEARCH_VECTOR = "to_tsvector('english', title || ' ' || description)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<WatchSummary> searchSummaries(WatchSearchCriteria criteria, int limit) {
+        List<String> conditions = new ArrayList<>();
+        MapSqlParameterSource parameters = new MapSqlParameterSource("limit", limit);
+
+        if (StringUtils.hasText(criteria.getQuery())) {
+            conditions.add(SEARCH_VECTOR + " @@ websearch_to_tsquery('english', :query)");
+            parameters.addValue("query", criteria.getQuery());
+        }
+        if (criteria.getMinPrice() != null) {
+            conditions.add("price >= :minPrice");
+            parameters.addValue("minPrice", criteria.getMinPrice());
+        }
+        if (criteria.getMaxPrice() != null) {
+            conditions.add("price <= :maxPrice");
+            parameters.addValue("maxPrice", criteria.getMaxPrice());
+        }
+        if (criteria.getAfterId() != null) {
+            // Row value comparison is resolved by the (price, id) index
+            switch (criteria.getSort()) {
+                case PRICE_ASC:
+                    conditions.add("(price, id) > (:afterPrice, :afterId)");
+                    break;
+                case PRICE_DESC:
+                    conditions.add("(price, id) < (:afterPrice, :afterId)");
+                    break;
+                default:
+                    conditions.add("id > :afterId");
+                    break;
+            }
+            parameters.addValue("afterId", criteria.getAfterId());
+            parameters.addValue("afterPrice", criteria.getAfterPrice());
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT id, title, price, description, version, updated_at FROM watch");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(criteria.getSort().getOrderBy()).append(" LIMIT :limit");
+
+        return jdbcTemplate.query(sql.toString(), parameters, (resultSet, rowNumber) -> new WatchSummaryRow(
+                resultSet.getLong("id"),
+                resultSet.getString("title"),
+                resultSet.getInt("price"),
+                resultSet.getString("description"),
+                resultSet.getLong("version"),
+                resultSet.getTimestamp("updated_at").toInstant()
+        ));
+    }
+
+    @AllArgsConstructor
+    private static final class WatchSummaryRow implements WatchSummary {
+
+        private final Long id;
+        private final String title;
+        private final Integer price;
+        private final String description;
+        private final Long version;
+        private final Instant updatedAt;
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public Integer getPrice() {
+            return price;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public Long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Instant getUpdatedAt() {
+            return updatedAt;
+        }
+
+    }
+
+}
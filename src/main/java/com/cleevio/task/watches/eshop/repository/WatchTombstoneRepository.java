@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.model.WatchTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface WatchTombstoneRepository extends JpaRepository<WatchTombstone, Long> {
+
+    // Tombstone is inserted before the watch row is deleted, like the change of the deletion
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO watch_tombstone (watch_id) SELECT id FROM watch WHERE id IN (:watchIds) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertTombstones(@Param("watchIds") Collection<Long> watchIds);
+
+    @Query("SELECT t.watchId FROM WatchTombstone t WHERE t.deletedAt > :since ORDER BY t.watchId")
+    List<Long> findWatchIdsDeletedSince(@Param("since") Instant since);
+
+}
@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository.projection;
+
+// Row returned by a single statement update, the previous fountain is released by the caller once it was replaced
+public interface UpdatedWatch {
+
+    String getPreviousFountainHash();
+
+    Long getVersion();
+
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository.projection;
+
+import java.time.Instant;
+
+// Closed projection of a watch without the fountain image, so that its LOB is not selected
+public interface WatchSummary {
+
+    Long getId();
+
+    String getTitle();
+
+    Integer getPrice();
+
+    String getDescription();
+
+    Long getVersion();
+
+    Instant getUpdatedAt();
+
+}
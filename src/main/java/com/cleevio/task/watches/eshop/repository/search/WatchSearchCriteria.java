@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository.search;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+public class WatchSearchCriteria {
+
+    private final String query;
+
+    private final Integer minPrice;
+
+    private final Integer maxPrice;
+
+    @Builder.Default
+    private final WatchSort sort = WatchSort.ID;
+
+    // Sort key of the last watch of previous page
+    private final Long afterId;
+
+    private final Integer afterPrice;
+
+}
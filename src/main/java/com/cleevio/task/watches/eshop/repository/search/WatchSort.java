@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository.search;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum WatchSort {
+
+    ID("id", "id ASC"),
+    PRICE_ASC("price", "price ASC, id ASC"),
+    PRICE_DESC("-price", "price DESC, id DESC");
+
+    private final String value;
+    private final String orderBy;
+
+    WatchSort(String value, String orderBy) {
+        this.value = value;
+        this.orderBy = orderBy;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public boolean isByPrice() {
+        return this != ID;
+    }
+
+    public static Optional<WatchSort> of(String value) {
+        return Arrays.stream(values()).filter(sort -> sort.value.equals(value)).findFirst();
+    }
+
+}
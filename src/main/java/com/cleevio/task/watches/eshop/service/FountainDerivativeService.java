@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service;
+
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import org.springframework.core.io.Resource;
+
+public interface FountainDerivativeService {
+
+    void scheduleDerivatives(String hash);
+
+    void generateDerivatives(String hash);
+
+    Resource getDerivative(String hash, FountainVariant variant);
+
+    void deleteDerivatives(String hash);
+
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service;
+
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+
+public interface FountainService {
+
+    FountainUpload upload(InputStream content);
+
+    void acquire(String hash, byte[] fountain);
+
+    void acquire(FountainUpload upload);
+
+    void release(String hash);
+
+    Resource getContent(String hash);
+
+    byte[] getContentBytes(String hash);
+
+}
@@ -4,10 +4,14 @@
 
 package com.cleevio.task.watches.eshop.service;
 
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+
 import javax.json.JsonMergePatch;
 
 public interface PatchService {
 
     <T> T applyPatch(JsonMergePatch jsonMergePatch, T targetBean, Class<T> clazz);
 
+    WatchDTO applyWatchPatch(JsonMergePatch jsonMergePatch, WatchDTO watchDTO);
+
 }
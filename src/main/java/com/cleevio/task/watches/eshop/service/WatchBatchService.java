@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service;
+
+import com.cleevio.task.watches.eshop.dto.BatchResultDTO;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+
+import java.util.Iterator;
+
+public interface WatchBatchService {
+
+    BatchResultDTO saveWatches(Iterator<WatchDTO> watchDTOs);
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service;
+
+import com.cleevio.task.watches.eshop.dto.WatchChangeDTO;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface WatchChangeService {
+
+    void recordChange(Long watchId, WatchChangeType type);
+
+    void recordChanges(Collection<Long> watchIds, WatchChangeType type);
+
+    int relayChanges();
+
+    int deleteExpiredChanges();
+
+    List<WatchChangeDTO> getChanges(long after, int limit);
+
+    List<Long> getDeletedWatchIds(Instant since);
+
+    Long getFirstPosition();
+
+    long getLastPosition();
+
+}
@@ -0,0 +1,13 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface WatchChangeStream {
+
+    SseEmitter subscribe(Long since);
+
+}
@@ -4,18 +4,37 @@
 
 package com.cleevio.task.watches.eshop.service;
 
+import com.cleevio.task.watches.eshop.dto.FountainDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.dto.WatchSyncDTO;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface WatchService {
 
-    List<WatchDTO> getAllWatches();
+    List<WatchDTO> getWatches(Long after, int limit, boolean withFountain);
 
-    WatchDTO getWatchById(Long id);
+    List<WatchDTO> searchWatches(WatchSearchCriteria criteria, int limit);
+
+    WatchSyncDTO getModifiedWatches(Instant since, Long after, Instant syncedAt, int limit);
+
+    WatchDTO getWatchById(Long id, boolean withFountain);
+
+    FountainDTO getFountainById(Long id, FountainVariant variant);
+
+    void exportWatches(Consumer<WatchDTO> consumer);
 
     WatchDTO saveWatch(WatchDTO watchDTO);
 
-    void deleteWatchById(Long id);
+    WatchDTO updateWatch(WatchDTO watchDTO, Long expectedVersion);
+
+    Long updateFountain(Long id, FountainUpload fountain, Long expectedVersion);
+
+    boolean deleteWatchById(Long id);
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.service.FountainDerivativeService;
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+@Service
+@Slf4j
+public class FountainDerivativeServiceImpl implements FountainDerivativeService {
+
+    private static final String DERIVATIVE_FORMAT = "jpeg";
+    private static final int MAX_DIMENSION = Arrays.stream(FountainVariant.values())
+            .mapToInt(FountainVariant::getDimension).max().orElse(0);
+    private static final int UNDECODABLE_MAXIMUM_SIZE = 10_000;
+    private static final Duration UNDECODABLE_EXPIRY = Duration.ofHours(1);
+
+    private final FountainStore fountainStore;
+    private final ThreadPoolExecutor executor;
+    private final Timer generationTimer;
+    private final Set<String> pendingHashes = ConcurrentHashMap.newKeySet();
+    // Images that can't be decoded have no derivatives, reads of them don't schedule the original to be read again
+    private final Cache<String, Boolean> undecodableHashes = Caffeine.newBuilder()
+            .maximumSize(UNDECODABLE_MAXIMUM_SIZE)
+            .expireAfterWrite(UNDECODABLE_EXPIRY)
+            .build();
+
+    public FountainDerivativeServiceImpl(FountainStore fountainStore,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${watches.fountain.derivatives.pool-size}") int poolSize,
+                                         @Value("${watches.fountain.derivatives.queue-capacity}") int queueCapacity) {
+        this.fountainStore = fountainStore;
+        // Images are decoded by a few own threads with a bounded queue, so a burst of uploads can't exhaust memory
+        // nor take threads of requests, derivatives rejected by the full queue are generated once they are read
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("fountain-derivatives-"));
+        this.generationTimer = Timer.builder("fountain.derivatives.generation")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "fountain.derivatives", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public void scheduleDerivatives(String hash) {
+        if (undecodableHashes.getIfPresent(hash) != null || !pendingHashes.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generationTimer.record(() -> generateDerivatives(hash));
+                } catch (RuntimeException e) {
+                    log.warn("Derivatives of fountain {} couldn't be generated.", hash, e);
+                } finally {
+                    pendingHashes.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingHashes.remove(hash);
+            log.debug("Derivatives of fountain {} weren't scheduled, the queue is full.", hash);
+        }
+    }
+
+    @Override
+    public void generateDerivatives(String hash) {
+        BufferedImage image = readImage(hash);
+        if (image == null) {
+            undecodableHashes.put(hash, Boolean.TRUE);
+            log.warn("Fountain {} can't be decoded, its derivatives weren't generated.", hash);
+            return;
+        }
+        for (FountainVariant variant : FountainVariant.values()) {
+            if (variant.isDerivative()) {
+                byte[] derivative = encode(resize(image, variant.getDimension()), hash);
+                fountainStore.write(variant.getKey(hash), new ByteArrayInputStream(derivative), derivative.length);
+            }
+        }
+        // Image may have been removed while its derivatives were generated, they mustn't outlive it
+        if (!fountainStore.exists(hash)) {
+            deleteDerivatives(hash);
+            return;
+        }
+        log.debug("Derivatives of fountain {} were successfully generated.", hash);
+    }
+
+    @Override
+    public Resource getDerivative(String hash, FountainVariant variant) {
+        Resource derivative = fountainStore.read(variant.getKey(hash));
+        if (!derivative.exists()) {
+            // Images stored before derivatives were introduced or rejected by the full queue are caught up lazily
+            scheduleDerivatives(hash);
+            return null;
+        }
+        return derivative;
+    }
+
+    @Override
+    public void deleteDerivatives(String hash) {
+        for (FountainVariant variant : FountainVariant.values()) {
+            if (variant.isDerivative()) {
+                fountainStore.delete(variant.getKey(hash));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private BufferedImage readImage(String hash) {
+        try (InputStream content = fountainStore.read(hash).getInputStream();
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Large images are subsampled while decoded, still leaving twice the pixels of the largest derivative
+                int subsampling = Math.max(1,
+                        Math.max(reader.getWidth(0), reader.getHeight(0)) / (2 * MAX_DIMENSION));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IIOException e) {
+            // Corrupted image is recognized by its reader, but can't be decoded either
+            log.debug("Fountain {} is corrupted.", hash, e);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Fountain %s couldn't be read.", hash), e);
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage image, int dimension) {
+        double scale = Math.min(1.0, (double) dimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        // JPEG has no alpha channel, transparent images are flattened onto white background
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static byte[] encode(BufferedImage image, String hash) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, DERIVATIVE_FORMAT, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Derivative of fountain %s couldn't be encoded.", hash), e);
+        }
+        return output.toByteArray();
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.repository.FountainRepository;
+import com.cleevio.task.watches.eshop.service.FountainDerivativeService;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static com.cleevio.task.watches.eshop.utils.ImageUtils.getImageMediaType;
+
+@Service
+@Slf4j
+public class FountainServiceImpl implements FountainService {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final FountainRepository fountainRepository;
+    private final FountainStore fountainStore;
+    private final FountainDerivativeService fountainDerivativeService;
+    private final TransactionTemplate cleanupTransaction;
+    private final long maxSize;
+
+    public FountainServiceImpl(FountainRepository fountainRepository,
+                               FountainStore fountainStore,
+                               FountainDerivativeService fountainDerivativeService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${watches.fountain.max-size}") DataSize maxSize) {
+        this.fountainRepository = fountainRepository;
+        this.fountainStore = fountainStore;
+        this.fountainDerivativeService = fountainDerivativeService;
+        // Cleanup runs after the transaction that scheduled it has completed, so it needs its own
+        this.cleanupTransaction = new TransactionTemplate(transactionManager);
+        this.cleanupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxSize = maxSize.toBytes();
+    }
+
+    @Override
+    public FountainUpload upload(InputStream content) {
+        // Image is spooled to disk and hashed on the fly, so it is never held in memory as a whole
+        Path file = createUploadFile();
+        try {
+            MessageDigest digest = ImageUtils.createContentDigest();
+            long size = 0;
+            try (OutputStream output = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                String.format("Fountain image must not be larger than %s bytes.", maxSize));
+                    }
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Fountain image must not be empty.");
+            }
+            // Upload replaces an image, content of another type would be stored and served as a binary file
+            MediaType mediaType = getImageMediaType(readSignature(file));
+            if (MediaType.APPLICATION_OCTET_STREAM.equals(mediaType)) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                        "Fountain image must be a JPEG, PNG or GIF image.");
+            }
+            return new FountainUpload(file, ImageUtils.getContentHash(digest), size, mediaType);
+        } catch (IOException e) {
+            deleteUploadFile(file);
+            throw new UncheckedIOException("Fountain image couldn't be uploaded.", e);
+        } catch (RuntimeException e) {
+            deleteUploadFile(file);
+            throw e;
+        }
+    }
+
+    @Transactional
+    @Override
+    public void acquire(String hash, byte[] fountain) {
+        // Already stored image only gains a reference, its content is not written again
+        if (fountainRepository.incrementReferenceCount(hash) == 0) {
+            // Content is stored before its row, so a committed row always points to an existing image, and under
+            // the lock, so removal of the same image released meanwhile can't delete what is written here
+            fountainRepository.lockContent(hash);
+            removeContentOnRollback(hash);
+            fountainStore.write(hash, new ByteArrayInputStream(fountain), fountain.length);
+            fountainRepository.insertOrIncrementReferenceCount(hash, fountain.length,
+                    getImageMediaType(fountain).toString());
+            scheduleDerivatives(hash);
+            log.debug("Fountain {} was successfully stored.", hash);
+        }
+    }
+
+    @Transactional
+    @Override
+    public void acquire(FountainUpload upload) {
+        if (fountainRepository.incrementReferenceCount(upload.getHash()) == 0) {
+            fountainRepository.lockContent(upload.getHash());
+            removeContentOnRollback(upload.getHash());
+            try (InputStream content = upload.getInputStream()) {
+                fountainStore.write(upload.getHash(), content, upload.getSize());
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Fountain %s couldn't be written.", upload.getHash()), e);
+            }
+            fountainRepository.insertOrIncrementReferenceCount(upload.getHash(), Math.toIntExact(upload.getSize()),
+                    upload.getMediaType().toString());
+            scheduleDerivatives(upload.getHash());
+            log.debug("Fountain {} was successfully stored.", upload.getHash());
+        }
+    }
+
+    @Transactional
+    @Override
+    public void release(String hash) {
+        fountainRepository.decrementReferenceCount(hash);
+        if (fountainRepository.deleteUnreferenced(hash) > 0) {
+            // Content is removed only once the row removal is committed, unless the image was stored again meanwhile
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUnreferencedContent(hash);
+                }
+            });
+        }
+    }
+
+    @Override
+    public Resource getContent(String hash) {
+        return fountainStore.read(hash);
+    }
+
+    @Override
+    public byte[] getContentBytes(String hash) {
+        try (InputStream content = fountainStore.read(hash).getInputStream()) {
+            return StreamUtils.copyToByteArray(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Fountain %s couldn't be read.", hash), e);
+        }
+    }
+
+    private void scheduleDerivatives(String hash) {
+        // Derivatives are generated in background once the image is committed, so the request doesn't wait for them
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                fountainDerivativeService.scheduleDerivatives(hash);
+            }
+        });
+    }
+
+    private void removeContentOnRollback(String hash) {
+        // Content written by a rolled back transaction would otherwise stay in the store without any row
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    removeUnreferencedContent(hash);
+                }
+            }
+        });
+    }
+
+    private void removeUnreferencedContent(String hash) {
+        // Lock waits for a transaction storing the same image, whose committed row then keeps the content
+        cleanupTransaction.executeWithoutResult(status -> {
+            fountainRepository.lockContent(hash);
+            if (!fountainRepository.existsById(hash)) {
+                fountainStore.delete(hash);
+                fountainDerivativeService.deleteDerivatives(hash);
+                log.debug("Fountain {} was successfully removed.", hash);
+            }
+        });
+    }
+
+    private static Path createUploadFile() {
+        try {
+            return Files.createTempFile("fountain", ".upload");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Fountain image couldn't be uploaded.", e);
+        }
+    }
+
+    private static byte[] readSignature(Path file) throws IOException {
+        try (InputStream content = Files.newInputStream(file)) {
+            return content.readNBytes(ImageUtils.SIGNATURE_LENGTH);
+        }
+    }
+
+    private static void deleteUploadFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Temporary fountain file {} couldn't be deleted.", file, e);
+        }
+    }
+
+}
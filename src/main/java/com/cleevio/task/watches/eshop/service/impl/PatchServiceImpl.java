@@ -4,12 +4,18 @@
 
 package com.cleevio.task.watches.eshop.service.impl;
 
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
 import com.cleevio.task.watches.eshop.service.PatchService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import javax.json.JsonMergePatch;
 import javax.json.JsonValue;
@@ -22,9 +28,12 @@ import javax.validation.Validator;
 @Slf4j
 public class PatchServiceImpl implements PatchService {
 
+    private static final String PATCH_TIMER = "watches.patch";
+
     private final Validator validator;
     private final ObjectMapper objectMapper;
 
+    @Timed(value = PATCH_TIMER, histogram = true)
     @Override
     public <T> T applyPatch(JsonMergePatch jsonMergePatch, T targetBean, Class<T> clazz) {
         // Convert the Java bean to a JSON document
@@ -45,4 +54,70 @@ public class PatchServiceImpl implements PatchService {
         return patchedBean;
     }
 
+    @Timed(value = PATCH_TIMER, histogram = true)
+    @Override
+    public WatchDTO applyWatchPatch(JsonMergePatch jsonMergePatch, WatchDTO watchDTO) {
+        JsonValue patch = jsonMergePatch.toJsonValue();
+        if (patch.getValueType() != JsonValue.ValueType.OBJECT) {
+            // Patch which is not an object replaces the whole document
+            return applyPatch(jsonMergePatch, watchDTO, WatchDTO.class);
+        }
+
+        // Only properties present in the patch are written, so fountain isn't encoded to Base64 and back
+        WatchDTO.WatchDTOBuilder builder = watchDTO.toBuilder();
+        Set<String> patchedProperties = new HashSet<>();
+        for (Map.Entry<String, JsonValue> property : patch.asJsonObject().entrySet()) {
+            String name = property.getKey();
+            JsonValue value = property.getValue();
+            switch (name) {
+                case "id":
+                    builder.id(convertProperty(name, value, Long.class));
+                    break;
+                case "title":
+                    builder.title(convertProperty(name, value, String.class));
+                    break;
+                case "price":
+                    builder.price(convertProperty(name, value, Integer.class));
+                    break;
+                case "description":
+                    builder.description(convertProperty(name, value, String.class));
+                    break;
+                case "fountain":
+                    builder.fountain(convertProperty(name, value, byte[].class));
+                    break;
+                default:
+                    // Unknown properties are ignored the same way as by the object mapper
+                    continue;
+            }
+            patchedProperties.add(name);
+        }
+        WatchDTO patchedWatchDTO = builder.build();
+
+        Set<ConstraintViolation<WatchDTO>> violations = new HashSet<>();
+        for (String patchedProperty : patchedProperties) {
+            violations.addAll(validator.validateProperty(patchedWatchDTO, patchedProperty));
+        }
+        if (!violations.isEmpty()) {
+            log.debug("Validation of patched watch has failed.");
+            throw new ConstraintViolationException(violations);
+        }
+
+        return patchedWatchDTO;
+    }
+
+    private <T> T convertProperty(String name, JsonValue value, Class<T> type) {
+        try {
+            // Only the patched value is converted, coerced by the same rules as the whole document, e.g. "100" or 100.5
+            // are accepted as price 100 and fountain is decoded from Base64
+            return objectMapper.convertValue(value, type);
+        } catch (IllegalArgumentException e) {
+            throw invalidProperty(name);
+        }
+    }
+
+    private static ResponseStatusException invalidProperty(String name) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Property %s of watch has invalid value.", name));
+    }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.dto.BatchItemResultDTO;
+import com.cleevio.task.watches.eshop.dto.BatchResultDTO;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.model.Fountain;
+import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+import com.cleevio.task.watches.eshop.repository.WatchRepository;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.service.WatchBatchService;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
+
+import static com.cleevio.task.watches.eshop.config.CacheConfiguration.WATCHES;
+import static com.cleevio.task.watches.eshop.config.CacheConfiguration.WATCH_SUMMARIES;
+
+@Service
+@Slf4j
+public class WatchBatchServiceImpl implements WatchBatchService {
+
+    private static final String BATCH_TIMER = "watches.batch";
+    private static final String FIELDS_SEPARATOR = ":";
+    private static final String NULL_ITEM = "must not be null";
+
+    private final WatchRepository watchRepository;
+    private final WatchMapper watchMapper;
+    private final FountainService fountainService;
+    private final WatchChangeService watchChangeService;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public WatchBatchServiceImpl(WatchRepository watchRepository,
+                                 WatchMapper watchMapper,
+                                 FountainService fountainService,
+                                 WatchChangeService watchChangeService,
+                                 Validator validator,
+                                 EntityManager entityManager,
+                                 CacheManager cacheManager,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${watches.batch.chunk-size}") int chunkSize) {
+        this.watchRepository = watchRepository;
+        this.watchMapper = watchMapper;
+        this.fountainService = fountainService;
+        this.watchChangeService = watchChangeService;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Timed(value = BATCH_TIMER, histogram = true)
+    @Override
+    public BatchResultDTO saveWatches(Iterator<WatchDTO> watchDTOs) {
+        List<BatchItemResultDTO> results = new ArrayList<>();
+        Map<Integer, WatchDTO> chunk = new LinkedHashMap<>();
+        int index = 0;
+        while (watchDTOs.hasNext()) {
+            WatchDTO watchDTO = null;
+            List<String> errors;
+            try {
+                watchDTO = watchDTOs.next();
+                errors = validate(watchDTO);
+            } catch (RuntimeJsonMappingException e) {
+                // Unreadable item is reported like an invalid one and the rest of the batch is still processed
+                errors = Collections.singletonList(e.getLocalizedMessage());
+            }
+            if (errors.isEmpty()) {
+                chunk.put(index, watchDTO);
+            } else {
+                results.add(new BatchItemResultDTO(index, (watchDTO != null) ? watchDTO.getId() : null,
+                        BatchItemResultDTO.Status.INVALID, errors));
+            }
+            index++;
+
+            if (chunk.size() == chunkSize) {
+                results.addAll(saveChunk(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(saveChunk(chunk));
+        }
+
+        results.sort(Comparator.comparingInt(BatchItemResultDTO::getIndex));
+        log.debug("Batch of {} watches was processed.", index);
+        return new BatchResultDTO(results);
+    }
+
+    private List<String> validate(WatchDTO watchDTO) {
+        if (watchDTO == null) {
+            return Collections.singletonList(NULL_ITEM);
+        }
+        return validator.validate(watchDTO).stream()
+                .map(violation -> violation.getPropertyPath() + FIELDS_SEPARATOR + violation.getMessage())
+                .collect(Collectors.toList());
+    }
+
+    private List<BatchItemResultDTO> saveChunk(Map<Integer, WatchDTO> chunk) {
+        try {
+            return transactionTemplate.execute(status -> persistChunk(chunk));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Failed to save chunk of {} watches.", chunk.size(), e);
+            return chunk.entrySet().stream()
+                    .map(entry -> new BatchItemResultDTO(entry.getKey(), entry.getValue().getId(),
+                            BatchItemResultDTO.Status.FAILED, Collections.singletonList(e.getMostSpecificCause()
+                            .getLocalizedMessage())))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<BatchItemResultDTO> persistChunk(Map<Integer, WatchDTO> chunk) {
+        // Existing watches of the whole chunk are loaded with a single query and updated via dirty checking
+        Map<Long, Watch> existingWatches = watchRepository.findByIdIn(chunk.values().stream()
+                .map(WatchDTO::getId).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Watch::getId, Function.identity()));
+
+        Map<Integer, Watch> createdWatches = new LinkedHashMap<>();
+        Map<Integer, Watch> updatedWatches = new LinkedHashMap<>();
+        List<String> releasedFountains = new ArrayList<>();
+        List<BatchItemResultDTO> results = new ArrayList<>();
+        chunk.forEach((index, watchDTO) -> {
+            String fountainHash = ImageUtils.getContentHash(watchDTO.getFountain());
+            if (watchDTO.getId() == null) {
+                Watch watch = watchMapper.watchDTOToWatch(watchDTO);
+                watch.setFountain(acquireFountain(fountainHash, watchDTO.getFountain()));
+                createdWatches.put(index, watch);
+            } else if (existingWatches.containsKey(watchDTO.getId())) {
+                Watch watch = existingWatches.get(watchDTO.getId());
+                watchMapper.updateWatch(watchDTO, watch);
+                // Unchanged image keeps its reference, so re-sent catalogue costs only hashing
+                if (!fountainHash.equals(watch.getFountain().getHash())) {
+                    releasedFountains.add(watch.getFountain().getHash());
+                    watch.setFountain(acquireFountain(fountainHash, watchDTO.getFountain()));
+                }
+                evictCachedWatch(watch.getId());
+                updatedWatches.put(index, watch);
+            } else {
+                results.add(new BatchItemResultDTO(index, watchDTO.getId(), BatchItemResultDTO.Status.NOT_FOUND));
+            }
+        });
+
+        watchRepository.saveAll(createdWatches.values());
+        watchRepository.flush();
+        releasedFountains.forEach(fountainService::release);
+        watchChangeService.recordChanges(createdWatches.values().stream().map(Watch::getId)
+                .collect(Collectors.toList()), WatchChangeType.CREATED);
+        watchChangeService.recordChanges(updatedWatches.values().stream().map(Watch::getId)
+                .collect(Collectors.toList()), WatchChangeType.UPDATED);
+        entityManager.clear();
+
+        createdWatches.forEach((index, watch) -> results.add(
+                new BatchItemResultDTO(index, watch.getId(), BatchItemResultDTO.Status.CREATED)));
+        updatedWatches.forEach((index, watch) -> results.add(
+                new BatchItemResultDTO(index, watch.getId(), BatchItemResultDTO.Status.UPDATED)));
+        return results;
+    }
+
+    private Fountain acquireFountain(String hash, byte[] fountain) {
+        fountainService.acquire(hash, fountain);
+        return entityManager.getReference(Fountain.class, hash);
+    }
+
+    private void evictCachedWatch(Long id) {
+        Stream.of(WATCHES, WATCH_SUMMARIES).map(cacheManager::getCache).filter(Objects::nonNull)
+                .forEach(cache -> cache.evict(id));
+    }
+
+}
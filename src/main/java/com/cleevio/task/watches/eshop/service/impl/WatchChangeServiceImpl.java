@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.dto.WatchChangeDTO;
+import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+import com.cleevio.task.watches.eshop.repository.WatchChangeRepository;
+import com.cleevio.task.watches.eshop.repository.WatchTombstoneRepository;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class WatchChangeServiceImpl implements WatchChangeService {
+
+    private final WatchChangeRepository watchChangeRepository;
+    private final WatchTombstoneRepository watchTombstoneRepository;
+    private final WatchMapper watchMapper;
+    private final int relayBatchSize;
+    private final Duration retention;
+
+    public WatchChangeServiceImpl(WatchChangeRepository watchChangeRepository,
+                                  WatchTombstoneRepository watchTombstoneRepository,
+                                  WatchMapper watchMapper,
+                                  @Value("${watches.changes.relay-batch-size}") int relayBatchSize,
+                                  @Value("${watches.changes.retention}") Duration retention) {
+        this.watchChangeRepository = watchChangeRepository;
+        this.watchTombstoneRepository = watchTombstoneRepository;
+        this.watchMapper = watchMapper;
+        this.relayBatchSize = relayBatchSize;
+        this.retention = retention;
+    }
+
+    // Change is recorded only together with the watch mutation, never in a transaction of its own
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void recordChange(Long watchId, WatchChangeType type) {
+        recordChanges(List.of(watchId), type);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void recordChanges(Collection<Long> watchIds, WatchChangeType type) {
+        if (watchIds.isEmpty()) {
+            return;
+        }
+        watchChangeRepository.insertChanges(watchIds, type.name());
+        // Tombstones outlive the retention of changes, delta sync reports deleted watches from them
+        if (type == WatchChangeType.DELETED) {
+            watchTombstoneRepository.insertTombstones(watchIds);
+        }
+    }
+
+    @Transactional
+    @Override
+    public int relayChanges() {
+        if (!watchChangeRepository.tryLockRelay()) {
+            return 0;
+        }
+        int relayed = watchChangeRepository.assignPositions(relayBatchSize);
+        if (relayed > 0) {
+            log.debug("{} watch changes were relayed.", relayed);
+        }
+        return relayed;
+    }
+
+    @Transactional
+    @Override
+    public int deleteExpiredChanges() {
+        int deleted = watchChangeRepository.deleteRelayedBefore(Instant.now().minus(retention));
+        log.debug("{} expired watch changes were removed.", deleted);
+        return deleted;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<WatchChangeDTO> getChanges(long after, int limit) {
+        return watchChangeRepository.findByPositionGreaterThanOrderByPositionAsc(after, PageRequest.of(0, limit))
+                .stream().map(watchMapper::watchChangeToWatchChangeDTO).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<Long> getDeletedWatchIds(Instant since) {
+        return watchTombstoneRepository.findWatchIdsDeletedSince(since);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Long getFirstPosition() {
+        return watchChangeRepository.findFirstPosition().orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long getLastPosition() {
+        return watchChangeRepository.findLastPosition().orElse(0L);
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.dto.WatchChangeDTO;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
+import com.cleevio.task.watches.eshop.service.WatchChangeStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+
+@Service
+@Slf4j
+public class WatchChangeStreamImpl implements WatchChangeStream {
+
+    public static final String CHANGE_EVENT = "change";
+    public static final String RESET_EVENT = "reset";
+
+    private final WatchChangeService watchChangeService;
+    private final int batchSize;
+    private final ThreadPoolExecutor sender;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile Long lastPosition;
+
+    public WatchChangeStreamImpl(WatchChangeService watchChangeService,
+                                 @Value("${watches.changes.relay-batch-size}") int batchSize,
+                                 @Value("${watches.changes.sender.pool-size}") int senderPoolSize,
+                                 @Value("${watches.changes.sender.queue-capacity}") int senderQueueCapacity) {
+        this.watchChangeService = watchChangeService;
+        this.batchSize = batchSize;
+        // Events are written by own threads, a stalled consumer holds up only its own sending and never the scheduler
+        this.sender = new ThreadPoolExecutor(senderPoolSize, senderPoolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(senderQueueCapacity), new CustomizableThreadFactory("watch-changes-"));
+    }
+
+    @Override
+    public SseEmitter subscribe(Long since) {
+        SseEmitter emitter = new SseEmitter();
+        Subscriber subscriber = new Subscriber(emitter, (since != null) ? since : getLastPosition());
+        if (since != null) {
+            // Changes older than the retention are gone, consumer has to rescan the catalogue before it continues
+            Long firstPosition = watchChangeService.getFirstPosition();
+            if (firstPosition != null && since < firstPosition - 1) {
+                subscriber.send(SseEmitter.event().name(RESET_EVENT).data(firstPosition - 1));
+                subscriber.position = firstPosition - 1;
+            }
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${watches.changes.relay-interval}")
+    public void relay() {
+        watchChangeService.relayChanges();
+        if (subscribers.isEmpty()) {
+            lastPosition = null;
+            return;
+        }
+
+        // Subscribers in sync share one query, catching up subscribers read their own batch on every run
+        long position = getLastPosition();
+        List<WatchChangeDTO> changes = watchChangeService.getChanges(position, batchSize);
+        for (Subscriber subscriber : subscribers) {
+            // Subscriber still sending the previous batch continues from its position on a later run
+            if (!subscriber.sending.compareAndSet(false, true)) {
+                continue;
+            }
+            List<WatchChangeDTO> subscriberChanges = (subscriber.position == position)
+                    ? changes : watchChangeService.getChanges(subscriber.position, batchSize);
+            try {
+                sender.execute(() -> {
+                    try {
+                        subscriber.send(subscriberChanges);
+                    } finally {
+                        subscriber.sending.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                subscriber.sending.set(false);
+                log.debug("Watch changes weren't sent to subscriber, the queue is full.");
+            }
+        }
+        if (!changes.isEmpty()) {
+            lastPosition = changes.get(changes.size() - 1).getPosition();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${watches.changes.cleanup-interval}")
+    public void deleteExpiredChanges() {
+        watchChangeService.deleteExpiredChanges();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    private long getLastPosition() {
+        Long position = lastPosition;
+        if (position == null) {
+            position = watchChangeService.getLastPosition();
+            lastPosition = position;
+        }
+        return position;
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long position;
+
+        private Subscriber(SseEmitter emitter, long position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+
+        private void send(List<WatchChangeDTO> changes) {
+            for (WatchChangeDTO change : changes) {
+                if (!send(SseEmitter.event().id(change.getPosition().toString()).name(CHANGE_EVENT)
+                        .data(change, MediaType.APPLICATION_JSON))) {
+                    return;
+                }
+                position = change.getPosition();
+            }
+        }
+
+        private boolean send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Watch changes couldn't be sent, subscriber is disconnected.", e);
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+
+    }
+
+}
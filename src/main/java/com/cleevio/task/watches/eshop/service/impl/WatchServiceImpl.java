@@ -4,50 +4,316 @@
 
 package com.cleevio.task.watches.eshop.service.impl;
 
+import com.cleevio.task.watches.eshop.datasource.ReplicaRoutingContext;
+import com.cleevio.task.watches.eshop.dto.FountainDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.dto.WatchSyncDTO;
 import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.model.Fountain;
+import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
 import com.cleevio.task.watches.eshop.repository.WatchRepository;
+import com.cleevio.task.watches.eshop.repository.projection.UpdatedWatch;
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import com.cleevio.task.watches.eshop.service.FountainDerivativeService;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
 import com.cleevio.task.watches.eshop.service.WatchService;
-import lombok.AllArgsConstructor;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+
+import static com.cleevio.task.watches.eshop.config.CacheConfiguration.WATCHES;
+import static com.cleevio.task.watches.eshop.config.CacheConfiguration.WATCH_SUMMARIES;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class WatchServiceImpl implements WatchService {
 
+    private static final String SERVICE_TIMER = "watches.service";
+    private static final String FOUNTAIN_SIZE = "watches.fountain.size";
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
     private final WatchRepository watchRepository;
     private final WatchMapper watchMapper;
+    private final FountainService fountainService;
+    private final FountainDerivativeService fountainDerivativeService;
+    private final WatchChangeService watchChangeService;
+    private final EntityManager entityManager;
+    private final DistributionSummary fountainReadSize;
+    private final DistributionSummary fountainWriteSize;
+
+    public WatchServiceImpl(WatchRepository watchRepository,
+                            WatchMapper watchMapper,
+                            FountainService fountainService,
+                            FountainDerivativeService fountainDerivativeService,
+                            WatchChangeService watchChangeService,
+                            EntityManager entityManager,
+                            MeterRegistry meterRegistry) {
+        this.watchRepository = watchRepository;
+        this.watchMapper = watchMapper;
+        this.fountainService = fountainService;
+        this.fountainDerivativeService = fountainDerivativeService;
+        this.watchChangeService = watchChangeService;
+        this.entityManager = entityManager;
+        // Summaries are registered once, so recording a size on the hot path doesn't look them up in the registry
+        this.fountainReadSize = createFountainSizeSummary("read", meterRegistry);
+        this.fountainWriteSize = createFountainSizeSummary("write", meterRegistry);
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public List<WatchDTO> getWatches(Long after, int limit, boolean withFountain) {
+        Long afterId = (after != null) ? after : 0L;
+        if (withFountain) {
+            return watchRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit))
+                    .stream().map(this::toWatchDTO).collect(Collectors.toList());
+        }
+        return watchRepository.findSummariesByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit))
+                .stream().map(watchMapper::watchSummaryToWatchDTO).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public List<WatchDTO> searchWatches(WatchSearchCriteria criteria, int limit) {
+        return watchRepository.searchSummaries(criteria, limit)
+                .stream().map(watchMapper::watchSummaryToWatchDTO).collect(Collectors.toList());
+    }
 
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
     @Override
-    public List<WatchDTO> getAllWatches() {
-        return watchRepository.findAll().stream().map(watchMapper::watchToWatchDTO).collect(Collectors.toList());
+    public WatchSyncDTO getModifiedWatches(Instant since, Long after, Instant syncedAt, int limit) {
+        // Sync point is taken from the primary, a lagging replica would miss watches modified before it
+        try (ReplicaRoutingContext.Scope ignored = ReplicaRoutingContext.usePrimary()) {
+            // Next pages keep the sync point of the first one, deletions made meanwhile are reported by the next sync.
+            // Timestamps set by Hibernate come from the application clock, the overlap covers its skew.
+            Instant syncPoint = (syncedAt != null) ? syncedAt : watchRepository.findSyncPoint().minus(SYNC_OVERLAP);
+            // One extra watch is fetched to find out whether there is a next page
+            List<WatchSummary> watches = watchRepository.findSummariesModifiedSince(since,
+                    (after != null) ? after : 0L, PageRequest.of(0, limit + 1));
+            List<WatchSummary> page = watches.subList(0, Math.min(watches.size(), limit));
+            WatchSyncDTO.WatchSyncDTOBuilder builder = WatchSyncDTO.builder()
+                    .watches(page.stream().map(watchMapper::watchSummaryToWatchDTO).collect(Collectors.toList()))
+                    // Deleted watches are reported with the first page only
+                    .deleted((after == null) ? watchChangeService.getDeletedWatchIds(since) : List.of())
+                    .syncedAt(syncPoint);
+            if (watches.size() > limit) {
+                WatchSummary last = page.get(page.size() - 1);
+                builder.nextModifiedSince(last.getUpdatedAt()).nextAfter(last.getId());
+            }
+            return builder.build();
+        }
     }
 
+    @Caching(cacheable = {
+            @Cacheable(cacheNames = WATCHES, key = "#id", condition = "#withFountain", unless = "#result == null"),
+            @Cacheable(cacheNames = WATCH_SUMMARIES, key = "#id", condition = "!#withFountain",
+                    unless = "#result == null")
+    })
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
     @Override
-    public WatchDTO getWatchById(Long id) {
-        return watchMapper.watchToWatchDTO(watchRepository.findById(id).orElse(null));
+    public WatchDTO getWatchById(Long id, boolean withFountain) {
+        // Watch is cached until its next change evicts it, so it's read from the primary rather than a lagging replica
+        try (ReplicaRoutingContext.Scope ignored = ReplicaRoutingContext.usePrimary()) {
+            if (withFountain) {
+                WatchDTO watchDTO = watchRepository.findById(id).map(this::toWatchDTO).orElse(null);
+                recordFountainSize(fountainReadSize, (watchDTO != null) ? watchDTO.getFountain() : null);
+                return watchDTO;
+            }
+            return watchMapper.watchSummaryToWatchDTO(watchRepository.findSummaryById(id).orElse(null));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public FountainDTO getFountainById(Long id, FountainVariant variant) {
+        // Only metadata is loaded from the database, content is streamed from the store by the response
+        return watchRepository.findFountainById(id).map(fountain -> {
+            if (variant.isDerivative()) {
+                Resource derivative = fountainDerivativeService.getDerivative(fountain.getHash(), variant);
+                // Original image is served until the derivative is generated
+                if (derivative != null) {
+                    return new FountainDTO(fountain.getHash(), MediaType.IMAGE_JPEG, getContentLength(derivative),
+                            variant, derivative);
+                }
+            }
+            fountainReadSize.record(fountain.getSize());
+            return new FountainDTO(fountain.getHash(), MediaType.parseMediaType(fountain.getMediaType()),
+                    fountain.getSize(), FountainVariant.ORIGINAL, fountainService.getContent(fountain.getHash()));
+        }).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public void exportWatches(Consumer<WatchDTO> consumer) {
+        try (Stream<Watch> watches = watchRepository.streamAllOrderById()) {
+            watches.forEach(watch -> {
+                consumer.accept(toWatchDTO(watch));
+                // Exported watch is detached so the persistence context doesn't grow with the catalogue
+                entityManager.detach(watch.getFountain());
+                entityManager.detach(watch);
+            });
+        }
     }
 
     @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     @Override
     public WatchDTO saveWatch(WatchDTO watchDTO) {
-        WatchDTO createdWatch = watchMapper.watchToWatchDTO(
-                watchRepository.save(watchMapper.watchDTOToWatch(watchDTO))
-        );
-        log.debug("Watch with id {} was successfully created or updated.", createdWatch.getId());
+        recordFountainSize(fountainWriteSize, watchDTO.getFountain());
+        Watch watch = watchMapper.watchDTOToWatch(watchDTO);
+        watch.setFountain(acquireFountain(watchDTO.getFountain()));
+        WatchDTO createdWatch = watchMapper.watchToWatchDTO(watchRepository.save(watch), watchDTO.getFountain());
+        watchChangeService.recordChange(createdWatch.getId(), WatchChangeType.CREATED);
+        log.debug("Watch with id {} was successfully created.", createdWatch.getId());
         return createdWatch;
     }
 
+    @CacheEvict(cacheNames = { WATCHES, WATCH_SUMMARIES }, key = "#watchDTO.id")
+    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public WatchDTO updateWatch(WatchDTO watchDTO, Long expectedVersion) {
+        recordFountainSize(fountainWriteSize, watchDTO.getFountain());
+        // Single statement locks and updates the watch, not found watch is recognized from the missing result
+        String fountainHash = ImageUtils.getContentHash(watchDTO.getFountain());
+        Optional<UpdatedWatch> updated = (expectedVersion == null)
+                ? watchRepository.updateWatch(watchDTO.getId(), watchDTO.getTitle(), watchDTO.getPrice(),
+                        watchDTO.getDescription(), fountainHash)
+                : watchRepository.updateWatch(watchDTO.getId(), watchDTO.getTitle(), watchDTO.getPrice(),
+                        watchDTO.getDescription(), fountainHash, expectedVersion);
+        if (updated.isEmpty()) {
+            return notUpdated(watchDTO.getId(), expectedVersion);
+        }
+        // Previous fountain comes from the locked row, so it's released exactly once
+        String previousHash = updated.get().getPreviousFountainHash();
+        if (!fountainHash.equals(previousHash)) {
+            fountainService.acquire(fountainHash, watchDTO.getFountain());
+            fountainService.release(previousHash);
+        }
+        watchChangeService.recordChange(watchDTO.getId(), WatchChangeType.UPDATED);
+
+        log.debug("Watch with id {} was successfully updated.", watchDTO.getId());
+        return new WatchDTO(
+                watchDTO.getId(),
+                watchDTO.getTitle(),
+                watchDTO.getPrice(),
+                watchDTO.getDescription(),
+                watchDTO.getFountain(),
+                updated.get().getVersion()
+        );
+    }
+
+    @CacheEvict(cacheNames = { WATCHES, WATCH_SUMMARIES }, key = "#id")
+    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    @Override
+    public Long updateFountain(Long id, FountainUpload fountain, Long expectedVersion) {
+        fountainWriteSize.record(fountain.getSize());
+        Optional<UpdatedWatch> updated = (expectedVersion == null)
+                ? watchRepository.updateFountain(id, fountain.getHash())
+                : watchRepository.updateFountain(id, fountain.getHash(), expectedVersion);
+        if (updated.isEmpty()) {
+            return notUpdated(id, expectedVersion);
+        }
+        String previousHash = updated.get().getPreviousFountainHash();
+        if (!fountain.getHash().equals(previousHash)) {
+            fountainService.acquire(fountain);
+            fountainService.release(previousHash);
+        }
+        watchChangeService.recordChange(id, WatchChangeType.UPDATED);
+        log.debug("Fountain of watch with id {} was successfully updated.", id);
+        return updated.get().getVersion();
+    }
+
+    @CacheEvict(cacheNames = { WATCHES, WATCH_SUMMARIES }, key = "#id")
+    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     @Override
-    public void deleteWatchById(Long id) {
+    public boolean deleteWatchById(Long id) {
+        // Change is recorded from the row it locks, the delete then returns the fountain to be released
+        watchChangeService.recordChange(id, WatchChangeType.DELETED);
+        Optional<String> fountainHash = watchRepository.deleteWatchById(id);
+        if (fountainHash.isEmpty()) {
+            return false;
+        }
+        fountainService.release(fountainHash.get());
         log.debug("Watch with id {} was successfully removed.", id);
-        watchRepository.deleteById(id);
+        return true;
+    }
+
+    private Fountain acquireFountain(byte[] fountain) {
+        String hash = ImageUtils.getContentHash(fountain);
+        fountainService.acquire(hash, fountain);
+        return entityManager.getReference(Fountain.class, hash);
+    }
+
+    // Watch that exists wasn't updated because of its version, a missing one is reported by null
+    private <T> T notUpdated(Long id, Long expectedVersion) {
+        if (expectedVersion != null && watchRepository.existsById(id)) {
+            log.debug("Watch with id {} doesn't have expected version {}.", id, expectedVersion);
+            throw new OptimisticLockingFailureException(
+                    String.format("Watch with id %s was modified concurrently.", id));
+        }
+        return null;
+    }
+
+    private WatchDTO toWatchDTO(Watch watch) {
+        return watchMapper.watchToWatchDTO(watch, fountainService.getContentBytes(watch.getFountain().getHash()));
+    }
+
+    private static long getContentLength(Resource content) {
+        try {
+            return content.contentLength();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Length of %s couldn't be read.", content), e);
+        }
+    }
+
+    private static void recordFountainSize(DistributionSummary summary, byte[] fountain) {
+        if (fountain != null) {
+            summary.record(fountain.length);
+        }
+    }
+
+    private static DistributionSummary createFountainSizeSummary(String operation, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder(FOUNTAIN_SIZE)
+                .baseUnit(BaseUnits.BYTES)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class FileSystemFountainStore implements FountainStore {
+
+    private final Path root;
+
+    public FileSystemFountainStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(getPath(key));
+    }
+
+    @Override
+    public void write(String key, InputStream content, long size) {
+        Path path = getPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            // Image is moved into place once complete, so a partially written file is never served
+            Path temporary = Files.createTempFile(path.getParent(), key, ".tmp");
+            try {
+                Files.copy(content, temporary, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Fountain %s couldn't be written.", key), e);
+        }
+    }
+
+    @Override
+    public Resource read(String key) {
+        return new FileSystemResource(getPath(key));
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(getPath(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Fountain %s couldn't be deleted.", key), e);
+        }
+    }
+
+    private Path getPath(String key) {
+        // Images are spread over subdirectories by the hash prefix to keep directories small
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+}
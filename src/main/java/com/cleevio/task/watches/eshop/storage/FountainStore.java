@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+
+// Storage of fountain images outside of the database, images are addressed by their content hash
+public interface FountainStore {
+
+    boolean exists(String key);
+
+    void write(String key, InputStream content, long size);
+
+    Resource read(String key);
+
+    void delete(String key);
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import lombok.ToString;
+import org.springframework.http.MediaType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Uploaded fountain spooled to a temporary file, the file is removed when the upload is closed
+@ToString
+public final class FountainUpload implements Closeable {
+
+    private final Path file;
+    private final String hash;
+    private final long size;
+    private final MediaType mediaType;
+
+    public FountainUpload(Path file, String hash, long size, MediaType mediaType) {
+        this.file = file;
+        this.hash = hash;
+        this.size = size;
+        this.mediaType = mediaType;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum FountainVariant {
+
+    ORIGINAL("original", 0),
+    MEDIUM("medium", 512),
+    THUMB("thumb", 128);
+
+    private final String value;
+    private final int dimension;
+
+    FountainVariant(String value, int dimension) {
+        this.value = value;
+        this.dimension = dimension;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public boolean isDerivative() {
+        return this != ORIGINAL;
+    }
+
+    public String getKey(String hash) {
+        // Derivatives are stored next to the original image under a suffixed key
+        return isDerivative() ? hash + "-" + value : hash;
+    }
+
+    public static Optional<FountainVariant> of(String value) {
+        return Arrays.stream(values()).filter(variant -> variant.value.equals(value)).findFirst();
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+// Store of any S3 compatible object storage, e.g. AWS S3 or MinIO
+public class S3FountainStore implements FountainStore {
+
+    private static final int NOT_FOUND = 404;
+
+    private final S3Client s3Client;
+    private final String bucket;
+
+    public S3FountainStore(S3Client s3Client, String bucket) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return getContentLength(key) >= 0;
+    }
+
+    @Override
+    public void write(String key, InputStream content, long size) {
+        s3Client.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromInputStream(content, size));
+    }
+
+    @Override
+    public Resource read(String key) {
+        return new S3Resource(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Client.deleteObject(request -> request.bucket(bucket).key(key));
+    }
+
+    private long getContentLength(String key) {
+        try {
+            return s3Client.headObject(request -> request.bucket(bucket).key(key)).contentLength();
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return -1;
+            }
+            throw e;
+        }
+    }
+
+    private final class S3Resource extends AbstractResource {
+
+        private final String key;
+        private Long contentLength;
+
+        private S3Resource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean exists() {
+            return contentLength() >= 0;
+        }
+
+        @Override
+        public long contentLength() {
+            // Length is needed for both headers and ranges of a response, object is asked only once
+            if (contentLength == null) {
+                contentLength = getContentLength(key);
+            }
+            return contentLength;
+        }
+
+        @Override
+        public InputStream getInputStream() throws FileNotFoundException {
+            try {
+                return s3Client.getObject(request -> request.bucket(bucket).key(key));
+            } catch (S3Exception e) {
+                if (e.statusCode() == NOT_FOUND) {
+                    throw new FileNotFoundException(getDescription() + " doesn't exist.");
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public String getFilename() {
+            return key;
+        }
+
+        @Override
+        public String getDescription() {
+            return String.format("S3 object [%s/%s]", bucket, key);
+        }
+
+    }
+
+}
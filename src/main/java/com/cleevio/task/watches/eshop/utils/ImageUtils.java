@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.utils;
+
+import org.springframework.http.MediaType;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class ImageUtils {
+
+    // Number of leading bytes needed to recognize media type of an image
+    public static final int SIGNATURE_LENGTH = 4;
+
+    private static final byte[] JPEG_SIGNATURE = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G' };
+    private static final byte[] GIF_SIGNATURE = { 'G', 'I', 'F', '8' };
+
+    private ImageUtils() {
+    }
+
+    public static MediaType getImageMediaType(byte[] image) {
+        if (startsWith(image, JPEG_SIGNATURE)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(image, PNG_SIGNATURE)) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(image, GIF_SIGNATURE)) {
+            return MediaType.IMAGE_GIF;
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    public static String getContentHash(byte[] image) {
+        MessageDigest digest = createContentDigest();
+        digest.update(image);
+        return getContentHash(digest);
+    }
+
+    public static String getContentHash(MessageDigest digest) {
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    public static MessageDigest createContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the runtime.", e);
+        }
+    }
+
+    private static boolean startsWith(byte[] image, byte[] signature) {
+        if (image.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (image[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
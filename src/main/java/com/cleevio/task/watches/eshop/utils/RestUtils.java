@@ -4,19 +4,24 @@
 
 package com.cleevio.task.watches.eshop.utils;
 
-import com.cleevio.task.watches.eshop.controller.WatchController;
-import com.cleevio.task.watches.eshop.dto.WatchDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import java.util.Arrays;
 
 @Slf4j
 public final class RestUtils {
 
+    public static final String DEFAULT_PAGE_SIZE = "20";
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final String FOUNTAIN = "fountain";
+
     private static final String NOT_FOUND = "Watch with id %s doesn't exist.";
+    private static final String WEAK_PREFIX = "W/";
+    private static final String VERSION_MISMATCH = "Watch doesn't match the version required by If-Match header.";
 
     private RestUtils() {
     }
@@ -29,6 +34,10 @@ public final class RestUtils {
         return object;
     }
 
+    public static void mustExist(boolean exists, Long id) {
+        mustExist(exists ? Boolean.TRUE : null, id);
+    }
+
     public static void checkWatchID(Long expected, Long actual) {
         if (!expected.equals(actual)) {
             throw new ResponseStatusException(
@@ -38,11 +47,61 @@ public final class RestUtils {
         }
     }
 
-    public static WatchDTO getWatchDTOWithLinks(Long id, WatchDTO watchDTO) {
-        return watchDTO.add(
-                linkTo(WatchController.class).slash(id).withSelfRel(),
-                linkTo(methodOn(WatchController.class).getAllWatches()).withRel("watches")
-        );
+    public static void checkWatchVersion(Long expected, Long actual) {
+        if (expected != null && !expected.equals(actual)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, VERSION_MISMATCH);
+        }
+    }
+
+    public static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Long version) {
+        return (version != null) ? builder.eTag(getETag(version)) : builder;
+    }
+
+    // Version is shared by inline and plain, textual, binary and gzipped representations of the watch, so it's a weak
+    // validator of any of them
+    public static ResponseEntity.BodyBuilder withWeakETag(ResponseEntity.BodyBuilder builder, Long version) {
+        return (version != null) ? builder.eTag(WEAK_PREFIX + getETag(version)) : builder;
+    }
+
+    public static boolean matchesETag(String ifNoneMatch, Long version) {
+        if (ifNoneMatch == null || version == null) {
+            return false;
+        }
+        String eTag = getETag(version);
+        // Weak comparison is used for If-None-Match header
+        return Arrays.stream(ifNoneMatch.split(",")).map(String::trim)
+                .anyMatch(value -> value.equals("*") || value.equals(eTag) || value.equals(WEAK_PREFIX + eTag));
+    }
+
+    public static Long getExpectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        // Version of watch is compared whether the entity tag came strong from a write or weak from a read, foreign
+        // entity tags never match
+        String eTag = ifMatch.trim();
+        if (eTag.startsWith(WEAK_PREFIX)) {
+            eTag = eTag.substring(WEAK_PREFIX.length());
+        }
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException e) {
+                log.debug("Entity tag {} is not a version of watch.", eTag);
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, VERSION_MISMATCH);
+    }
+
+    private static String getETag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static int getPageSize(Integer limit) {
+        if (limit == null || limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be a positive number.");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
 }
@@ -0,0 +1,17 @@
+-- Pooled sequence, increment must match allocationSize of Watch id generator
+CREATE SEQUENCE watch_sequence START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE watch (
+    id          BIGINT       NOT NULL PRIMARY KEY,
+    title       VARCHAR(256) NOT NULL,
+    price       INTEGER      NOT NULL,
+    description VARCHAR(256) NOT NULL,
+    fountain    OID          NOT NULL,
+    version     BIGINT       NOT NULL DEFAULT 0
+);
+
+-- Price filtering and keyset pagination of search ordered by price
+CREATE INDEX watch_price_idx ON watch (price, id);
+
+-- Full-text search over title and description, expression must match the one used by WatchSearchRepositoryImpl
+CREATE INDEX watch_search_idx ON watch USING GIN (to_tsvector('english', title || ' ' || description));
@@ -0,0 +1,25 @@
+-- Content addressed fountains, identical images are stored once and shared by reference count
+CREATE TABLE fountain (
+    hash            VARCHAR(64) NOT NULL PRIMARY KEY,
+    content         BYTEA       NOT NULL,
+    size            INTEGER     NOT NULL,
+    reference_count INTEGER     NOT NULL
+);
+
+ALTER TABLE watch ADD COLUMN fountain_hash VARCHAR(64);
+
+UPDATE watch SET fountain_hash = encode(sha256(lo_get(fountain)), 'hex');
+
+INSERT INTO fountain (hash, content, size, reference_count)
+SELECT fountain_hash, lo_get(MIN(fountain)), length(lo_get(MIN(fountain))), COUNT(*)
+FROM watch
+GROUP BY fountain_hash;
+
+SELECT lo_unlink(fountain) FROM watch;
+
+ALTER TABLE watch DROP COLUMN fountain;
+ALTER TABLE watch ALTER COLUMN fountain_hash SET NOT NULL;
+ALTER TABLE watch ADD CONSTRAINT watch_fountain_fk FOREIGN KEY (fountain_hash) REFERENCES fountain (hash);
+
+-- Reference lookups and the foreign key check on fountain removal
+CREATE INDEX watch_fountain_idx ON watch (fountain_hash);
@@ -0,0 +1,18 @@
+-- Outbox of watch changes written in the transaction of the change, ids follow the order of changes of the same watch
+-- because the watch row is locked before its change is inserted
+CREATE SEQUENCE watch_change_sequence;
+-- Positions are assigned by a single relay in commit order, so consumers can resume from the last seen position
+CREATE SEQUENCE watch_change_position_sequence;
+
+CREATE TABLE watch_change (
+    id         BIGINT                   NOT NULL PRIMARY KEY DEFAULT nextval('watch_change_sequence'),
+    watch_id   BIGINT                   NOT NULL,
+    type       VARCHAR(16)              NOT NULL,
+    version    BIGINT,
+    position   BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE UNIQUE INDEX watch_change_position_idx ON watch_change (position);
+-- Changes waiting for the relay
+CREATE INDEX watch_change_pending_idx ON watch_change (id) WHERE position IS NULL;
@@ -0,0 +1,14 @@
+-- Existing watches are considered modified by the migration, so clients synced before it load them once again
+ALTER TABLE watch ADD COLUMN created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+ALTER TABLE watch ADD COLUMN updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+-- Delta sync reads watches modified since the client's last sync in keyset pages
+CREATE INDEX watch_updated_idx ON watch (updated_at, id);
+
+-- Ids of deleted watches for delta sync, kept after the changes of watch_change expire
+CREATE TABLE watch_tombstone (
+    watch_id   BIGINT                   NOT NULL PRIMARY KEY,
+    deleted_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX watch_tombstone_deleted_idx ON watch_tombstone (deleted_at);
@@ -0,0 +1,3 @@
+-- Watch is updated to a new fountain before the fountain is acquired in the same transaction, so the previous fountain
+-- is returned by the update itself instead of being locked and read by a separate statement
+ALTER TABLE watch ALTER CONSTRAINT watch_fountain_fk DEFERRABLE INITIALLY DEFERRED;
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import com.cleevio.task.watches.eshop.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.List;
+import javax.servlet.DispatcherType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlInterceptorTest {
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    private MeterRegistry meterRegistry;
+
+    private AdmissionControlInterceptor interceptor;
+
+    private HandlerMethod cheap;
+
+    private HandlerMethod expensive;
+
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new AdmissionControlInterceptor(rateLimiter, List.of("secret"), 1, meterRegistry);
+        Endpoints endpoints = new Endpoints();
+        cheap = new HandlerMethod(endpoints, Endpoints.class.getMethod("cheap"));
+        expensive = new HandlerMethod(endpoints, Endpoints.class.getMethod("expensive"));
+    }
+
+    @Test
+    void admitByIpAddress() {
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), cheap)).isTrue();
+        verify(rateLimiter).tryConsume("ip:127.0.0.1", 1);
+    }
+
+    @Test
+    void admitByApiKey() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdmissionControlInterceptor.API_KEY_HEADER, "secret");
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), expensive)).isTrue();
+        verify(rateLimiter).tryConsume("key:secret", 20);
+    }
+
+    @Test
+    void admitUnknownApiKeyByIpAddress() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdmissionControlInterceptor.API_KEY_HEADER, "random");
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), cheap)).isTrue();
+        verify(rateLimiter).tryConsume("ip:127.0.0.1", 1);
+    }
+
+    @Test
+    void rejectOverRateLimit() {
+        when(rateLimiter.tryConsume(anyString(), anyInt())).thenReturn(1500L);
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                cheap))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, exception -> {
+                    assertThat(exception.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(exception.getRetryAfterSeconds()).isEqualTo(2);
+                });
+        assertThat(meterRegistry.counter("watches.admission.rejected", "reason", "rate-limit").count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectOverBulkhead() {
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(first, response, expensive)).isTrue();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, cheap)).isTrue();
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), response, expensive))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, exception ->
+                        assertThat(exception.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        interceptor.afterCompletion(first, response, expensive, null);
+        assertThat(interceptor.getAvailablePermits()).isEqualTo(1);
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, expensive)).isTrue();
+    }
+
+    @Test
+    void rejectOverBulkheadWithoutTokens() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, expensive)).isTrue();
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), response, expensive))
+                .isInstanceOf(AdmissionRejectedException.class);
+        // Request rejected by the bulkhead doesn't take tokens of the client
+        verify(rateLimiter, times(1)).tryConsume(anyString(), anyInt());
+    }
+
+    @Test
+    void rejectOverRateLimitReleasesPermit() {
+        when(rateLimiter.tryConsume(anyString(), anyInt())).thenReturn(100L);
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                expensive))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, exception ->
+                        assertThat(exception.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        assertThat(interceptor.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void admitAsyncDispatch() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request, response, expensive)).isTrue();
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertThat(interceptor.preHandle(request, response, expensive)).isTrue();
+        verify(rateLimiter).tryConsume(anyString(), anyInt());
+
+        interceptor.afterCompletion(request, response, expensive, null);
+        interceptor.afterCompletion(request, response, expensive, null);
+        assertThat(interceptor.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void admitOtherHandlers() {
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()))
+                .isTrue();
+        verify(rateLimiter, never()).tryConsume(anyString(), anyInt());
+    }
+
+    static class Endpoints {
+
+        public void cheap() {
+        }
+
+        @RequestCost(value = 20, bulkhead = true)
+        public void expensive() {
+        }
+
+    }
+
+}
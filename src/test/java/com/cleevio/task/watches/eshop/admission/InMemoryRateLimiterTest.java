@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRateLimiterTest {
+
+    private static final String CLIENT = "ip:127.0.0.1";
+
+    private AtomicLong nanoTime;
+
+    private InMemoryRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        nanoTime = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        rateLimiter = new InMemoryRateLimiter(10, 10, 1000, nanoTime::get);
+    }
+
+    @Test
+    void consumeBurst() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryConsume(CLIENT, 1)).isZero();
+        }
+        assertThat(rateLimiter.tryConsume(CLIENT, 1)).isEqualTo(100);
+    }
+
+    @Test
+    void consumeRefilled() {
+        assertThat(rateLimiter.tryConsume(CLIENT, 10)).isZero();
+        advance(250);
+        assertThat(rateLimiter.tryConsume(CLIENT, 1)).isZero();
+        assertThat(rateLimiter.tryConsume(CLIENT, 1)).isZero();
+        assertThat(rateLimiter.tryConsume(CLIENT, 1)).isEqualTo(50);
+    }
+
+    @Test
+    void consumeCostOverCapacity() {
+        assertThat(rateLimiter.tryConsume(CLIENT, 50)).isZero();
+        assertThat(rateLimiter.tryConsume(CLIENT, 5)).isEqualTo(500);
+        advance(1000);
+        assertThat(rateLimiter.tryConsume(CLIENT, 50)).isZero();
+    }
+
+    @Test
+    void consumeRejectedKeepsTokens() {
+        assertThat(rateLimiter.tryConsume(CLIENT, 8)).isZero();
+        assertThat(rateLimiter.tryConsume(CLIENT, 5)).isEqualTo(300);
+        assertThat(rateLimiter.tryConsume(CLIENT, 2)).isZero();
+    }
+
+    @Test
+    void consumeSeparateClients() {
+        assertThat(rateLimiter.tryConsume(CLIENT, 10)).isZero();
+        assertThat(rateLimiter.tryConsume("key:secret", 10)).isZero();
+        assertThat(rateLimiter.tryConsume(CLIENT, 1)).isPositive();
+    }
+
+    private void advance(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.admission;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisRateLimiterTest {
+
+    private static final int REDIS_PORT = 6379;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:6.2-alpine")
+            .withExposedPorts(REDIS_PORT);
+
+    private static RedisClient redisClient;
+    private static StatefulRedisConnection<String, String> connection;
+    private static RedisRateLimiter rateLimiter;
+
+    @BeforeAll
+    static void setUp() {
+        redisClient = RedisClient.create("redis://" + REDIS.getHost() + ":" + REDIS.getMappedPort(REDIS_PORT));
+        connection = redisClient.connect();
+        rateLimiter = new RedisRateLimiter(connection, 10, 1);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        connection.close();
+        redisClient.shutdown();
+    }
+
+    @Test
+    void consumeBurst() {
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.1", 8)).isZero();
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.1", 2)).isZero();
+        // Refill of a token takes a second, part of it may have passed since the first request
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.1", 1)).isBetween(900L, 1000L);
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.2", 1)).isZero();
+    }
+
+    @Test
+    void consumeAfterScriptFlush() {
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.3", 1)).isZero();
+        connection.sync().scriptFlush();
+        assertThat(rateLimiter.tryConsume("ip:10.0.0.3", 9)).isZero();
+        assertThat(connection.sync().pttl("watches:rate-limit:ip:10.0.0.3")).isBetween(9000L, 10000L);
+    }
+
+}
@@ -5,37 +5,96 @@
 package com.cleevio.task.watches.eshop.controller;
 
 import com.cleevio.task.watches.eshop.config.JsonMergePatchHttpMessageConverter;
+import com.cleevio.task.watches.eshop.config.PrecompressedWatchHttpMessageConverter;
+import com.cleevio.task.watches.eshop.config.PrecompressedWatchHttpMessageConverter.Representation;
+import com.cleevio.task.watches.eshop.datasource.ReplicaRoutingContext;
+import com.cleevio.task.watches.eshop.dto.BatchItemResultDTO;
+import com.cleevio.task.watches.eshop.dto.BatchResultDTO;
+import com.cleevio.task.watches.eshop.dto.FountainDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.dto.WatchSyncDTO;
+import com.cleevio.task.watches.eshop.exception.GeneralExceptionHandler;
+import com.cleevio.task.watches.eshop.hateoas.WatchLinkFactory;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import com.cleevio.task.watches.eshop.repository.search.WatchSort;
+import com.cleevio.task.watches.eshop.service.FountainService;
 import com.cleevio.task.watches.eshop.service.PatchService;
+import com.cleevio.task.watches.eshop.service.WatchBatchService;
+import com.cleevio.task.watches.eshop.service.WatchChangeStream;
 import com.cleevio.task.watches.eshop.service.WatchService;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import com.cleevio.task.watches.eshop.utils.RestUtils;
 import com.cleevio.task.watches.eshop.utils.TestUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.http.converter.xml.MappingJackson2XmlHttpMessageConverter;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
-
+import org.springframework.util.Base64Utils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static com.cleevio.task.watches.eshop.utils.TestUtils.BASE_64_IMAGE;
 import static com.cleevio.task.watches.eshop.utils.TestUtils.asJsonString;
 import static com.cleevio.task.watches.eshop.utils.TestUtils.assertWatchDTO;
 import static com.cleevio.task.watches.eshop.utils.TestUtils.createWatchDTO;
 import static com.cleevio.task.watches.eshop.utils.TestUtils.getPerform;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
@@ -52,23 +111,48 @@ class WatchControllerTest {
     @Mock
     private PatchService patchService;
 
+    @Mock
+    private WatchBatchService watchBatchService;
+
+    @Mock
+    private FountainService fountainService;
+
+    @Mock
+    private WatchChangeStream watchChangeStream;
+
+    private Cache<String, Representation> representations;
+
     private MockMvc mockMvc;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        mockMvc = MockMvcBuilders.standaloneSetup(new WatchController(watchService, patchService))
+        representations = Caffeine.newBuilder().recordStats().build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new WatchController(watchService, patchService, watchBatchService,
+                new ObjectMapper(), new WatchLinkFactory(), fountainService, watchChangeStream))
+                .setControllerAdvice(new GeneralExceptionHandler())
                 .setMessageConverters(
+                        new PrecompressedWatchHttpMessageConverter(List.of(
+                                new MappingJackson2XmlHttpMessageConverter(),
+                                new MappingJackson2HttpMessageConverter(),
+                                new MappingJackson2CborHttpMessageConverter(),
+                                new MappingJackson2SmileHttpMessageConverter()
+                        ), representations, List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML), 0),
                         new JsonMergePatchHttpMessageConverter(),
+                        new ByteArrayHttpMessageConverter(),
+                        new ResourceHttpMessageConverter(),
+                        new ResourceRegionHttpMessageConverter(),
                         new MappingJackson2XmlHttpMessageConverter(),
-                        new MappingJackson2HttpMessageConverter()
+                        new MappingJackson2HttpMessageConverter(),
+                        new MappingJackson2CborHttpMessageConverter(),
+                        new MappingJackson2SmileHttpMessageConverter()
                 ).build();
     }
 
     @Test
     void getAllWatches() throws Exception {
-        WatchDTO watchDTO = TestUtils.createWatchDTO();
-        when(watchService.getAllWatches()).thenReturn(Collections.singletonList(watchDTO));
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        when(watchService.getWatches(isNull(), eq(21), eq(false))).thenReturn(Collections.singletonList(watchDTO));
         mockMvc.perform(get(BASE_URL).accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.content[*].id").value(1))
@@ -76,19 +160,350 @@ class WatchControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.content[*].description")
                         .value("Fountain watch"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.content[*].price").value(250000))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].fountain").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].links[?(@.rel == 'fountain')].href")
+                        .value("http://localhost/api/v1/watches/1/fountain"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'next')]").isEmpty());
+        verify(watchService).getWatches(isNull(), eq(21), eq(false));
+    }
+
+    @Test
+    void getModifiedWatches() throws Exception {
+        Instant since = Instant.parse("2021-07-01T10:00:00Z");
+        WatchSyncDTO sync = WatchSyncDTO.builder()
+                .watches(List.of(TestUtils.createWatchSummaryDTO()))
+                .deleted(List.of(3L))
+                .syncedAt(since.plusSeconds(60))
+                .nextModifiedSince(since.plusSeconds(5))
+                .nextAfter(1L)
+                .build();
+        when(watchService.getModifiedWatches(eq(since), isNull(), isNull(), eq(20))).thenReturn(sync);
+        mockMvc.perform(get(BASE_URL).param("modifiedSince", since.toString()).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.watches[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.watches[0].links[?(@.rel == 'thumbnail')]").exists())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.deleted[0]").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.syncedAt").exists())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextAfter").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'next')].href")
+                        .value(hasItem(containsString("after=1"))))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'next')].href")
+                        .value(hasItem(containsString("syncedAt=" + since.plusSeconds(60)))));
+        verify(watchService).getModifiedWatches(eq(since), isNull(), isNull(), eq(20));
+        verify(watchService, never()).getWatches(any(), anyInt(), anyBoolean());
+
+        mockMvc.perform(get(BASE_URL).param("modifiedSince", "yesterday").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllWatchesInline() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        when(watchService.getWatches(isNull(), eq(21), eq(true))).thenReturn(Collections.singletonList(watchDTO));
+        mockMvc.perform(get(BASE_URL).param("inline", "true").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.content[*].fountain").value(BASE_64_IMAGE));
-        verify(watchService).getAllWatches();
+        verify(watchService).getWatches(isNull(), eq(21), eq(true));
+    }
+
+    @Test
+    void getWatchesPage() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        WatchDTO nextWatchDTO = new WatchDTO(2L, "Prime", 250, "Watch", watchDTO.getFountain());
+        when(watchService.getWatches(eq(0L), eq(2), eq(false))).thenReturn(Arrays.asList(watchDTO, nextWatchDTO));
+        mockMvc.perform(get(BASE_URL).param("after", "0").param("limit", "1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'next')].href")
+                        .value("http://localhost/api/v1/watches?after=1&limit=1&inline=false"));
+        verify(watchService).getWatches(eq(0L), eq(2), eq(false));
+    }
+
+    @Test
+    void getWatchesPageSizeIsCapped() throws Exception {
+        mockMvc.perform(get(BASE_URL).param("limit", "1000").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        verify(watchService).getWatches(isNull(), eq(RestUtils.MAX_PAGE_SIZE + 1), eq(false));
+        mockMvc.perform(get(BASE_URL).param("limit", "0").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchWatches() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        WatchSearchCriteria criteria = WatchSearchCriteria.builder()
+                .query("fountain")
+                .minPrice(1000)
+                .maxPrice(300000)
+                .sort(WatchSort.PRICE_DESC)
+                .build();
+        when(watchService.searchWatches(eq(criteria), eq(2))).thenReturn(Arrays.asList(watchDTO, watchDTO));
+        mockMvc.perform(get(BASE_URL + "/search").param("q", "fountain").param("minPrice", "1000")
+                .param("maxPrice", "300000").param("sort", "-price").param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].fountain").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'next')].href")
+                        .value("http://localhost/api/v1/watches/search?q=fountain&minPrice=1000&maxPrice=300000"
+                                + "&sort=-price&after=1&afterPrice=250000&limit=1"));
+        verify(watchService).searchWatches(eq(criteria), eq(2));
+    }
+
+    @Test
+    void searchWatchesWithInvalidParameters() throws Exception {
+        mockMvc.perform(get(BASE_URL + "/search").param("sort", "title").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BASE_URL + "/search").param("sort", "price").param("after", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(watchService, never()).searchWatches(any(), anyInt());
+    }
+
+    @Test
+    void exportWatches() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        doAnswer(invocation -> {
+            Consumer<WatchDTO> consumer = invocation.getArgument(0);
+            consumer.accept(watchDTO);
+            consumer.accept(watchDTO);
+            return null;
+        }).when(watchService).exportWatches(any());
+        MvcResult result = mockMvc.perform(get(BASE_URL + "/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = content.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(content).endsWith("\n");
+        assertThat(new ObjectMapper().readTree(lines[0]).get("fountain").asText()).isEqualTo(BASE_64_IMAGE);
+        verify(watchService).exportWatches(any());
+    }
+
+    @Test
+    void exportWatchesFromPrimary() throws Exception {
+        AtomicBoolean primaryRequired = new AtomicBoolean();
+        doAnswer(invocation -> {
+            primaryRequired.set(ReplicaRoutingContext.isPrimaryRequired());
+            return null;
+        }).when(watchService).exportWatches(any());
+        MvcResult result;
+        try (ReplicaRoutingContext.Scope ignored = ReplicaRoutingContext.usePrimary()) {
+            result = mockMvc.perform(get(BASE_URL + "/export"))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+        }
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertThat(primaryRequired).isTrue();
+    }
+
+    @Test
+    void getChanges() throws Exception {
+        when(watchChangeStream.subscribe(any())).thenAnswer(invocation -> new SseEmitter());
+        mockMvc.perform(get(BASE_URL + "/changes").param("since", "3").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        mockMvc.perform(get(BASE_URL + "/changes").header("Last-Event-ID", "5").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        mockMvc.perform(get(BASE_URL + "/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        verify(watchChangeStream).subscribe(eq(3L));
+        verify(watchChangeStream).subscribe(eq(5L));
+        verify(watchChangeStream).subscribe(isNull());
     }
 
     @Test
     void getWatchById() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        when(watchService.getWatchById(eq(1L), eq(false))).thenReturn(watchDTO);
+        mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.title").value("Prim"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.fountain").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.links[?(@.rel == 'fountain')].href")
+                        .value("http://localhost/api/v1/watches/1/fountain"));
+        verify(watchService).getWatchById(eq(1L), eq(false));
+        // Watch returned by the service may be cached and must stay without links
+        assertThat(watchDTO.getLinks()).isEmpty();
+    }
+
+    @Test
+    void getWatchByIdCompressed() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        when(watchService.getWatchById(eq(1L), eq(false)))
+                .thenReturn(new WatchDTO(1L, "Prim", 250000, "Fountain watch", null, 3L));
+        when(watchService.getWatchById(eq(1L), eq(true)))
+                .thenReturn(new WatchDTO(1L, "Prim", 250000, "Fountain watch", fountain, 3L));
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true")
+                    .accept(MediaType.APPLICATION_JSON).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andReturn();
+            try (InputStream content = new GZIPInputStream(
+                    new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+                JsonNode watch = new ObjectMapper().readTree(content);
+                assertThat(watch.get("fountain").asText()).isEqualTo(BASE_64_IMAGE);
+            }
+        }
+        // Second response is written from the cached representation without serializing the watch again
+        assertThat(representations.stats().hitCount()).isEqualTo(1);
+        mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.fountain").value(BASE_64_IMAGE));
+    }
+
+    @Test
+    void getWatchByIdWithGzipRefused() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        when(watchService.getWatchById(eq(1L), eq(true)))
+                .thenReturn(new WatchDTO(1L, "Prim", 250000, "Fountain watch", fountain, 3L));
+        for (String acceptEncoding : List.of("gzip;q=0", "identity, gzip;q=0", "*;q=0", "gzip;q=0, *", "deflate")) {
+            mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true")
+                    .accept(MediaType.APPLICATION_JSON).header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.fountain").value(BASE_64_IMAGE));
+        }
+        for (String acceptEncoding : List.of("*", "deflate;q=1, GZIP;q=0.5", "identity;q=0, *;q=0.1")) {
+            mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true")
+                    .accept(MediaType.APPLICATION_JSON).header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        }
+    }
+
+    @Test
+    void getWatchByIdInline() throws Exception {
         WatchDTO watchDTO = TestUtils.createWatchDTO();
-        when(watchService.getWatchById(eq(1L))).thenReturn(watchDTO);
-        ResultActions actions = mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).accept(MediaType.APPLICATION_JSON))
+        when(watchService.getWatchById(eq(1L), eq(false))).thenReturn(TestUtils.createWatchSummaryDTO());
+        when(watchService.getWatchById(eq(1L), eq(true))).thenReturn(watchDTO);
+        ResultActions actions = mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true")
+                .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
         TestUtils.assertWatchDTO(actions, MediaType.APPLICATION_JSON, "Prim", 250000,
                 "Fountain watch", BASE_64_IMAGE);
-        verify(watchService).getWatchById(eq(1L));
+        verify(watchService).getWatchById(eq(1L), eq(true));
+    }
+
+    @Test
+    void getWatchByIdWithETag() throws Exception {
+        WatchDTO watchDTO = new WatchDTO(1L, "Prim", 250000, "Fountain watch", null, 3L);
+        when(watchService.getWatchById(eq(1L), eq(false))).thenReturn(watchDTO);
+        mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void getWatchByIdNotModified() throws Exception {
+        WatchDTO watchDTO = new WatchDTO(1L, "Prim", 250000, "Fountain watch", null, 3L);
+        when(watchService.getWatchById(eq(1L), eq(false))).thenReturn(watchDTO);
+        mockMvc.perform(get(WATCH_URL_TEMPLATE, 1).param("inline", "true")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"2\", \"3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"3\""))
+                .andExpect(MockMvcResultMatchers.content().string(""));
+        verify(watchService, never()).getWatchById(eq(1L), eq(true));
+    }
+
+    @Test
+    void getFountain() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        when(watchService.getFountainById(eq(1L), eq(FountainVariant.ORIGINAL)))
+                .thenReturn(createFountainDTO(fountain));
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1)).andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(MockMvcResultMatchers.header().longValue("Content-Length", fountain.length))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"hash\""))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(MockMvcResultMatchers.content().bytes(fountain));
+        verify(watchService).getFountainById(eq(1L), eq(FountainVariant.ORIGINAL));
+    }
+
+    @Test
+    void getFountainRange() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        when(watchService.getFountainById(eq(1L), eq(FountainVariant.ORIGINAL)))
+                .thenReturn(createFountainDTO(fountain));
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1).header(HttpHeaders.RANGE, "bytes=0-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_RANGE,
+                        "bytes 0-9/" + fountain.length))
+                .andExpect(MockMvcResultMatchers.content().bytes(Arrays.copyOf(fountain, 10)));
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1).header(HttpHeaders.IF_NONE_MATCH, "\"hash\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getFountainThumbnail() throws Exception {
+        byte[] thumbnail = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        when(watchService.getFountainById(eq(1L), eq(FountainVariant.THUMB))).thenReturn(new FountainDTO("hash",
+                MediaType.IMAGE_JPEG, thumbnail.length, FountainVariant.THUMB, new ByteArrayResource(thumbnail)));
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1).param("size", "thumb"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"hash-thumb\""))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"))
+                .andExpect(MockMvcResultMatchers.content().bytes(thumbnail));
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1).param("size", "thumb")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"hash-thumb\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1).param("size", "huge"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getFountainOfWatchThatDoesntExist() throws Exception {
+        mockMvc.perform(get(WATCH_URL_TEMPLATE + "/fountain", 1)).andExpect(status().isNotFound());
+        verify(watchService).getFountainById(eq(1L), eq(FountainVariant.ORIGINAL));
+    }
+
+    @Test
+    void updateFountain() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        FountainUpload upload = new FountainUpload(Paths.get("upload"), "hash", fountain.length, MediaType.IMAGE_JPEG);
+        when(fountainService.upload(any())).thenReturn(upload);
+        when(watchService.updateFountain(eq(1L), eq(upload), eq(3L))).thenReturn(4L);
+        mockMvc.perform(put(WATCH_URL_TEMPLATE + "/fountain", 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(fountain)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isNoContent())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""));
+        verify(watchService).updateFountain(eq(1L), eq(upload), eq(3L));
+    }
+
+    @Test
+    void uploadFountain() throws Exception {
+        byte[] fountain = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        FountainUpload upload = new FountainUpload(Paths.get("upload"), "hash", fountain.length, MediaType.IMAGE_JPEG);
+        when(fountainService.upload(any())).thenReturn(upload);
+        when(watchService.updateFountain(eq(1L), eq(upload), isNull())).thenReturn(1L);
+        mockMvc.perform(multipart(WATCH_URL_TEMPLATE + "/fountain", 1L)
+                .file(new MockMultipartFile("fountain", "fountain.jpg", MediaType.IMAGE_JPEG_VALUE, fountain))
+                .with(request -> {
+                    request.setMethod("PUT");
+                    return request;
+                }))
+                .andExpect(status().isNoContent())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1\""));
+        verify(fountainService).upload(any());
+    }
+
+    @Test
+    void updateFountainOfWatchThatDoesntExist() throws Exception {
+        when(fountainService.upload(any())).thenReturn(
+                new FountainUpload(Paths.get("upload"), "hash", 3, MediaType.APPLICATION_OCTET_STREAM));
+        mockMvc.perform(put(WATCH_URL_TEMPLATE + "/fountain", 1L)
+                .content(new byte[] { 1, 2, 3 })
+                .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -104,15 +519,156 @@ class WatchControllerTest {
     }
 
     @Test
-    void updateWatch() throws Exception {
+    void createWatchBinary() throws Exception {
         WatchDTO watchDTO = TestUtils.createWatchDTO();
+        when(watchService.saveWatch(any())).thenReturn(watchDTO);
+        for (ObjectMapper binaryMapper : Arrays.asList(new CBORMapper(), new SmileMapper())) {
+            MediaType mediaType = (binaryMapper instanceof CBORMapper)
+                    ? MediaType.APPLICATION_CBOR : MediaType.valueOf("application/x-jackson-smile");
+            MvcResult result = mockMvc.perform(post(BASE_URL)
+                    .content(binaryMapper.writeValueAsBytes(new WatchDTO("Prim", 250000, "Fountain watch",
+                            watchDTO.getFountain())))
+                    .contentType(mediaType)
+                    .accept(mediaType))
+                    .andExpect(status().isCreated())
+                    .andExpect(MockMvcResultMatchers.content().contentType(mediaType))
+                    .andReturn();
+            JsonNode watch = binaryMapper.readTree(result.getResponse().getContentAsByteArray());
+            assertThat(watch.get("title").asText()).isEqualTo("Prim");
+            // Fountain is carried as raw bytes instead of Base64 text
+            assertThat(watch.get("fountain").isBinary()).isTrue();
+            assertThat(watch.get("fountain").binaryValue()).isEqualTo(watchDTO.getFountain());
+        }
+        verify(watchService, times(2)).saveWatch(eq(new WatchDTO("Prim", 250000, "Fountain watch",
+                watchDTO.getFountain())));
+    }
+
+    @Test
+    void createWatches() throws Exception {
+        BatchResultDTO result = new BatchResultDTO(Arrays.asList(
+                new BatchItemResultDTO(0, 1L, BatchItemResultDTO.Status.CREATED),
+                new BatchItemResultDTO(1, null, BatchItemResultDTO.Status.INVALID,
+                        Collections.singletonList("title:must not be blank"))
+        ));
+        when(watchBatchService.saveWatches(any())).thenReturn(result);
+        ArrayNode watches = JsonNodeFactory.instance.arrayNode()
+                .add(TestUtils.createWatch())
+                .add(TestUtils.createWatch("   ", 250, "Watch", BASE_64_IMAGE));
+        getPerform(mockMvc, post(BASE_URL + "/batch"), watches.toString())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.succeeded").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].status").value("CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].status").value("INVALID"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].errors[0]").value("title:must not be blank"));
+        verify(watchBatchService).saveWatches(any());
+    }
+
+    @Test
+    void createWatchesFromStream() throws Exception {
+        when(watchBatchService.saveWatches(any())).thenAnswer(invocation -> {
+            Iterator<WatchDTO> watchDTOs = invocation.getArgument(0);
+            List<BatchItemResultDTO> items = new ArrayList<>();
+            while (watchDTOs.hasNext()) {
+                items.add(new BatchItemResultDTO(items.size(), watchDTOs.next().getId(),
+                        BatchItemResultDTO.Status.CREATED));
+            }
+            return new BatchResultDTO(items);
+        });
+        String content = TestUtils.createWatch() + "\n" + TestUtils.createWatch() + "\n";
+        getPerform(mockMvc, post(BASE_URL + "/batch"), content, MediaType.valueOf("application/x-ndjson"),
+                MediaType.APPLICATION_JSON)
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.succeeded").value(2));
+    }
+
+    @Test
+    void createWatchesFromStreamWithMalformedLine() throws Exception {
+        when(watchBatchService.saveWatches(any())).thenAnswer(invocation -> {
+            Iterator<WatchDTO> watchDTOs = invocation.getArgument(0);
+            List<BatchItemResultDTO> items = new ArrayList<>();
+            while (watchDTOs.hasNext()) {
+                try {
+                    items.add(new BatchItemResultDTO(items.size(), watchDTOs.next().getId(),
+                            BatchItemResultDTO.Status.CREATED));
+                } catch (RuntimeJsonMappingException e) {
+                    items.add(new BatchItemResultDTO(items.size(), null, BatchItemResultDTO.Status.INVALID,
+                            Collections.singletonList(e.getMessage())));
+                }
+            }
+            return new BatchResultDTO(items);
+        });
+        String content = TestUtils.createWatch() + "\n{\"title\": \"Prim\",\n\n" + TestUtils.createWatch() + "\n";
+        getPerform(mockMvc, post(BASE_URL + "/batch"), content, MediaType.valueOf("application/x-ndjson"),
+                MediaType.APPLICATION_JSON)
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].status").value("INVALID"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[2].status").value("CREATED"));
+    }
+
+    @Test
+    void updateWatch() throws Exception {
         WatchDTO updatedWatchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
-        when(watchService.getWatchById(eq(1L))).thenReturn(watchDTO);
-        when(watchService.saveWatch(any())).thenReturn(updatedWatchDTO);
+        when(watchService.updateWatch(any(), any())).thenReturn(updatedWatchDTO);
         ResultActions actions = getPerform(mockMvc, put(WATCH_URL_TEMPLATE, 1L), asJsonString(updatedWatchDTO))
                 .andExpect(status().isOk());
         TestUtils.assertWatchDTO(actions, MediaType.APPLICATION_JSON, "Prime", 250, "Watch",
                 BASE_64_IMAGE);
+        verify(watchService).updateWatch(eq(updatedWatchDTO), isNull());
+        verify(watchService, never()).getWatchById(any(), anyBoolean());
+    }
+
+    @Test
+    void updateWatchWithETag() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
+        WatchDTO updatedWatchDTO = new WatchDTO(1L, "Prime", 250, "Watch", watchDTO.getFountain(), 4L);
+        when(watchService.updateWatch(any(), eq(3L))).thenReturn(updatedWatchDTO);
+        mockMvc.perform(put(WATCH_URL_TEMPLATE, 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(asJsonString(watchDTO))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""));
+        verify(watchService).updateWatch(eq(watchDTO), eq(3L));
+    }
+
+    @Test
+    void updateWatchWithWeakETag() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
+        WatchDTO updatedWatchDTO = new WatchDTO(1L, "Prime", 250, "Watch", watchDTO.getFountain(), 4L);
+        when(watchService.updateWatch(any(), eq(3L))).thenReturn(updatedWatchDTO);
+        // Weak entity tag of a read carries the version as well
+        mockMvc.perform(put(WATCH_URL_TEMPLATE, 1L)
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .content(asJsonString(watchDTO))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""));
+        verify(watchService).updateWatch(eq(watchDTO), eq(3L));
+    }
+
+    @Test
+    void updateWatchWithStaleETag() throws Exception {
+        WatchDTO watchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
+        when(watchService.updateWatch(any(), eq(2L)))
+                .thenThrow(new OptimisticLockingFailureException("Watch with id 1 was modified concurrently."));
+        mockMvc.perform(put(WATCH_URL_TEMPLATE, 1L)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(asJsonString(watchDTO))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put(WATCH_URL_TEMPLATE, 1L)
+                .header(HttpHeaders.IF_MATCH, "\"abc\"")
+                .content(asJsonString(watchDTO))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+        verify(watchService).updateWatch(eq(watchDTO), eq(2L));
     }
 
     @Test
@@ -120,24 +676,39 @@ class WatchControllerTest {
         ObjectNode patchWatch = TestUtils.createWatch("Prime", 250, "Watch", BASE_64_IMAGE);
         WatchDTO watchDTO = TestUtils.createWatchDTO();
         WatchDTO patchedWatchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
-        when(watchService.getWatchById(eq(1L))).thenReturn(watchDTO);
-        when(patchService.applyPatch(any(), any(), eq(WatchDTO.class))).thenReturn(patchedWatchDTO);
-        when(watchService.saveWatch(any())).thenReturn(patchedWatchDTO);
+        when(watchService.getWatchById(eq(1L), eq(true))).thenReturn(watchDTO);
+        when(patchService.applyWatchPatch(any(), any())).thenReturn(patchedWatchDTO);
+        when(watchService.updateWatch(any(), any())).thenReturn(patchedWatchDTO);
         ResultActions actions = getPerform(mockMvc, patch(WATCH_URL_TEMPLATE, 1L), patchWatch.toString(),
                 MediaType.valueOf("application/merge-patch+json"), MediaType.APPLICATION_JSON)
                 .andExpect(status().isOk());
         TestUtils.assertWatchDTO(actions, MediaType.APPLICATION_JSON, "Prime", 250, "Watch",
                 BASE_64_IMAGE);
-        verify(patchService).applyPatch(any(), any(), eq(WatchDTO.class));
-        verify(watchService).saveWatch(eq(patchedWatchDTO));
+        verify(patchService).applyWatchPatch(any(), any());
+        verify(watchService).updateWatch(eq(patchedWatchDTO), isNull());
+    }
+
+    @Test
+    void patchWatchWithStaleETag() throws Exception {
+        ObjectNode patchWatch = JsonNodeFactory.instance.objectNode().put("title", "Prime");
+        WatchDTO watchDTO = new WatchDTO(1L, "Prim", 250000, "Fountain watch", null, 3L);
+        when(watchService.getWatchById(eq(1L), eq(true))).thenReturn(watchDTO);
+        mockMvc.perform(patch(WATCH_URL_TEMPLATE, 1L)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(patchWatch.toString())
+                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+        verify(patchService, never()).applyWatchPatch(any(), any());
+        verify(watchService, never()).updateWatch(any(), any());
     }
 
     @Test
     void deleteWatch() throws Exception {
-        WatchDTO watchDTO = TestUtils.createWatchDTO();
-        when(watchService.getWatchById(eq(1L))).thenReturn(watchDTO);
+        when(watchService.deleteWatchById(eq(1L))).thenReturn(true);
         mockMvc.perform(delete(WATCH_URL_TEMPLATE, 1)).andExpect(status().isNoContent());
         verify(watchService).deleteWatchById(eq(1L));
+        verify(watchService, never()).getWatchById(any(), anyBoolean());
     }
 
     @Test
@@ -174,7 +745,6 @@ class WatchControllerTest {
         ObjectNode watch = TestUtils.createWatch();
         when(watchService.saveWatch(any())).thenReturn(watchDTO);
         getPerform(mockMvc, post(BASE_URL), watch.toString()).andExpect(status().isCreated());
-        when(watchService.getWatchById(1L)).thenReturn(watchDTO);
 
         String imageBase64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAABGdBTUEAALGPC/xhBQAAACBjSFJNAAB6JgA"
                 + "AgIQAAPoAAACA6AAAdTAAAOpgAAA6mAAAF3CculE8AAAAAmJLR0QA/4ePzL8AAAAHdElNRQflBh4RKSGgELNvAAAAC0lEQVQI12P"
@@ -185,7 +755,7 @@ class WatchControllerTest {
         watch.put("id", 1);
         WatchDTO updatedWatchDTO = TestUtils.createWatchDTO("Prim", 250000, "Fountain watch",
                 imageBase64);
-        when(watchService.saveWatch(any())).thenReturn(updatedWatchDTO);
+        when(watchService.updateWatch(any(), any())).thenReturn(updatedWatchDTO);
         ResultActions actions = getPerform(mockMvc, put(WATCH_URL_TEMPLATE, 1L), watch.toString())
                 .andExpect(status().isOk());
         assertWatchDTO(actions, MediaType.APPLICATION_JSON, "Prim", 250000, "Fountain watch",
@@ -258,7 +828,7 @@ class WatchControllerTest {
     void getWatchThatDoesntExist() throws Exception {
         mockMvc.perform(get(WATCH_URL_TEMPLATE, 1L).accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
-        verify(watchService).getWatchById(eq(1L));
+        verify(watchService).getWatchById(eq(1L), eq(false));
     }
 
     @Test
@@ -266,7 +836,7 @@ class WatchControllerTest {
         WatchDTO updatedWatchDTO = createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
         getPerform(mockMvc, put(WATCH_URL_TEMPLATE, 1L), asJsonString(updatedWatchDTO))
                 .andExpect(status().isNotFound());
-        verify(watchService).getWatchById(eq(1L));
+        verify(watchService).updateWatch(eq(updatedWatchDTO), isNull());
     }
 
     @Test
@@ -276,13 +846,18 @@ class WatchControllerTest {
         getPerform(mockMvc, patch(WATCH_URL_TEMPLATE, 1L), watch.toString(),
                 MediaType.valueOf("application/merge-patch+json"), MediaType.APPLICATION_JSON)
                 .andExpect(status().isNotFound());
-        verify(watchService).getWatchById(eq(1L));
+        verify(watchService).getWatchById(eq(1L), eq(true));
     }
 
     @Test
     void deleteWatchThatDoesntExist() throws Exception {
         mockMvc.perform(delete(WATCH_URL_TEMPLATE, 1L)).andExpect(status().isNotFound());
-        verify(watchService).getWatchById(eq(1L));
+        verify(watchService).deleteWatchById(eq(1L));
+    }
+
+    private static FountainDTO createFountainDTO(byte[] fountain) {
+        return new FountainDTO("hash", MediaType.IMAGE_JPEG, fountain.length, FountainVariant.ORIGINAL,
+                new ByteArrayResource(fountain));
     }
 
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+
+import static com.cleevio.task.watches.eshop.datasource.ReadYourWritesFilter.WRITTEN_UNTIL_COOKIE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesFilterTest {
+
+    private static final Instant NOW = Instant.parse("2021-07-01T10:00:00Z");
+
+    private ReadYourWritesFilter filter;
+
+    private AtomicBoolean primaryRequired;
+
+    private FilterChain filterChain;
+
+    @BeforeEach
+    void setUp() {
+        filter = new ReadYourWritesFilter(Duration.ofSeconds(10), Clock.fixed(NOW, ZoneOffset.UTC));
+        primaryRequired = new AtomicBoolean();
+        filterChain = (request, response) -> primaryRequired.set(ReplicaRoutingContext.isPrimaryRequired());
+    }
+
+    @Test
+    void write() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/v1/watches/1"), response, filterChain);
+        assertThat(primaryRequired).isTrue();
+        assertThat(ReplicaRoutingContext.isPrimaryRequired()).isFalse();
+        Cookie cookie = response.getCookie(WRITTEN_UNTIL_COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).isEqualTo(Long.toString(NOW.plusSeconds(10).toEpochMilli()));
+        assertThat(cookie.getMaxAge()).isEqualTo(10);
+    }
+
+    @Test
+    void readAfterWrite() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/watches/1");
+        request.setCookies(new Cookie(WRITTEN_UNTIL_COOKIE, Long.toString(NOW.plusSeconds(5).toEpochMilli())));
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        assertThat(primaryRequired).isTrue();
+    }
+
+    @Test
+    void read() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/watches/1");
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        assertThat(primaryRequired).isFalse();
+
+        request = new MockHttpServletRequest("GET", "/api/v1/watches/1");
+        request.setCookies(new Cookie(WRITTEN_UNTIL_COOKIE, Long.toString(NOW.minusSeconds(1).toEpochMilli())));
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        assertThat(primaryRequired).isFalse();
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.hateoas;
+
+import com.cleevio.task.watches.eshop.controller.WatchController;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+class WatchLinkFactoryTest {
+
+    private final WatchLinkFactory watchLinkFactory = new WatchLinkFactory();
+
+    @BeforeEach
+    void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/watches/1");
+        request.setServerName("eshop.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void withLinks() {
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        WatchDTO watchDTOWithLinks = watchLinkFactory.withLinks(1L, watchDTO);
+        assertThat(watchDTOWithLinks.getLinks()).containsExactly(
+                linkTo(WatchController.class).slash(1L).withSelfRel(),
+                linkTo(WatchController.class).slash(1L).slash("fountain").withRel("fountain"),
+                linkTo(WatchController.class).slash(1L).slash("fountain?size=thumb").withRel("thumbnail"),
+                linkTo(methodOn(WatchController.class).getAllWatches(null, null, false)).withRel("watches")
+        );
+        assertThat(watchDTOWithLinks.getRequiredLink(IanaLinkRelations.SELF).getHref())
+                .isEqualTo("http://eshop.example.com/api/v1/watches/1");
+        assertThat(watchDTO.getLinks()).isEmpty();
+    }
+
+}
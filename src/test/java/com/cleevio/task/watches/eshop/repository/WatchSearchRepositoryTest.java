@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.repository;
+
+import com.cleevio.task.watches.eshop.model.Fountain;
+import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import com.cleevio.task.watches.eshop.repository.search.WatchSearchCriteria;
+import com.cleevio.task.watches.eshop.repository.search.WatchSort;
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class WatchSearchRepositoryTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:13-alpine");
+
+    @Autowired
+    private WatchRepository watchRepository;
+
+    @Autowired
+    private FountainRepository fountainRepository;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        watchRepository.deleteAllInBatch();
+        fountainRepository.deleteAllInBatch();
+        Fountain fountain = fountainRepository.save(TestUtils.createFountain());
+        watchRepository.saveAll(Arrays.asList(
+                new Watch(null, "Prim", 250000, "Fountain watch with automatic movement", fountain),
+                new Watch(null, "Seiko", 12000, "Diver watches", fountain),
+                new Watch(null, "Casio", 1500, "Digital watch with stopwatch", fountain),
+                new Watch(null, "Omega", 400000, "Automatic chronograph", fountain)
+        ));
+    }
+
+    @Test
+    void searchByText() {
+        List<WatchSummary> watches = watchRepository.searchSummaries(WatchSearchCriteria.builder()
+                .query("automatic").build(), 10);
+        assertThat(getTitles(watches)).containsExactly("Prim", "Omega");
+        assertThat(getTitles(watchRepository.searchSummaries(WatchSearchCriteria.builder()
+                .query("watch -digital").build(), 10))).containsExactly("Prim", "Seiko");
+    }
+
+    @Test
+    void searchByPrice() {
+        List<WatchSummary> watches = watchRepository.searchSummaries(WatchSearchCriteria.builder()
+                .minPrice(10000).maxPrice(300000).sort(WatchSort.PRICE_ASC).build(), 10);
+        assertThat(getTitles(watches)).containsExactly("Seiko", "Prim");
+    }
+
+    @Test
+    void searchPages() {
+        List<WatchSummary> firstPage = watchRepository.searchSummaries(WatchSearchCriteria.builder()
+                .sort(WatchSort.PRICE_DESC).build(), 2);
+        assertThat(getTitles(firstPage)).containsExactly("Omega", "Prim");
+
+        WatchSummary last = firstPage.get(1);
+        List<WatchSummary> secondPage = watchRepository.searchSummaries(WatchSearchCriteria.builder()
+                .sort(WatchSort.PRICE_DESC).afterId(last.getId()).afterPrice(last.getPrice()).build(), 2);
+        assertThat(getTitles(secondPage)).containsExactly("Seiko", "Casio");
+    }
+
+    @Test
+    void findModifiedPages() {
+        Instant since = Instant.now().minus(Duration.ofHours(1));
+        List<WatchSummary> firstPage = watchRepository.findSummariesModifiedSince(since, 0L, PageRequest.of(0, 3));
+        assertThat(firstPage).hasSize(3);
+
+        WatchSummary last = firstPage.get(2);
+        List<WatchSummary> secondPage = watchRepository.findSummariesModifiedSince(last.getUpdatedAt(), last.getId(),
+                PageRequest.of(0, 3));
+        assertThat(getTitles(secondPage)).hasSize(1).doesNotContainAnyElementsOf(getTitles(firstPage));
+        assertThat(watchRepository.findSummariesModifiedSince(Instant.now(), 0L, PageRequest.of(0, 3))).isEmpty();
+    }
+
+    private static List<String> getTitles(List<WatchSummary> watches) {
+        return watches.stream().map(WatchSummary::getTitle).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.storage.FileSystemFountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class FountainDerivativeServiceImplTest {
+
+    private static final String HASH = "d2f5a8b1c3";
+
+    @TempDir
+    Path root;
+
+    private FountainStore fountainStore;
+
+    private FountainDerivativeServiceImpl fountainDerivativeService;
+
+    @BeforeEach
+    void setUp() {
+        fountainStore = spy(new FileSystemFountainStore(root));
+        fountainDerivativeService = new FountainDerivativeServiceImpl(fountainStore, new SimpleMeterRegistry(), 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fountainDerivativeService.shutdown();
+    }
+
+    @Test
+    void generateDerivatives() throws Exception {
+        writeImage(2048, 1024);
+        fountainDerivativeService.generateDerivatives(HASH);
+
+        BufferedImage thumbnail = readImage(fountainDerivativeService.getDerivative(HASH, FountainVariant.THUMB));
+        assertThat(thumbnail.getWidth()).isEqualTo(128);
+        assertThat(thumbnail.getHeight()).isEqualTo(64);
+        BufferedImage medium = readImage(fountainDerivativeService.getDerivative(HASH, FountainVariant.MEDIUM));
+        assertThat(medium.getWidth()).isEqualTo(512);
+        assertThat(medium.getHeight()).isEqualTo(256);
+
+        fountainDerivativeService.deleteDerivatives(HASH);
+        assertThat(fountainStore.exists(FountainVariant.THUMB.getKey(HASH))).isFalse();
+        assertThat(fountainStore.exists(HASH)).isTrue();
+    }
+
+    @Test
+    void generateDerivativesOfSmallImage() throws Exception {
+        writeImage(100, 50);
+        fountainDerivativeService.generateDerivatives(HASH);
+        BufferedImage medium = readImage(fountainDerivativeService.getDerivative(HASH, FountainVariant.MEDIUM));
+        assertThat(medium.getWidth()).isEqualTo(100);
+        assertThat(medium.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void generateDerivativesOfInvalidImage() {
+        fountainStore.write(HASH, new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 3);
+        fountainDerivativeService.generateDerivatives(HASH);
+        assertThat(fountainStore.exists(FountainVariant.THUMB.getKey(HASH))).isFalse();
+
+        // Image that can't be decoded isn't read again by reads of its derivatives
+        assertThat(fountainDerivativeService.getDerivative(HASH, FountainVariant.THUMB)).isNull();
+        verify(fountainStore, after(200).times(1)).read(HASH);
+    }
+
+    @Test
+    void getMissingDerivative() {
+        assertThat(fountainDerivativeService.getDerivative(HASH, FountainVariant.THUMB)).isNull();
+    }
+
+    private void writeImage(int width, int height) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", output);
+        byte[] image = output.toByteArray();
+        fountainStore.write(HASH, new ByteArrayInputStream(image), image.length);
+    }
+
+    private static BufferedImage readImage(Resource resource) throws Exception {
+        try (InputStream content = resource.getInputStream()) {
+            return ImageIO.read(content);
+        }
+    }
+
+}
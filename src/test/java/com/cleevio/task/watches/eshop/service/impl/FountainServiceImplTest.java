@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.model.Fountain;
+import com.cleevio.task.watches.eshop.repository.FountainRepository;
+import com.cleevio.task.watches.eshop.repository.WatchRepository;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.service.WatchService;
+import com.cleevio.task.watches.eshop.storage.FountainStore;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static com.cleevio.task.watches.eshop.utils.TestUtils.BASE_64_IMAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class FountainServiceImplTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:13-alpine");
+
+    @TempDir
+    static Path fountainStorePath;
+
+    @Autowired
+    private WatchService watchService;
+
+    @Autowired
+    private FountainService fountainService;
+
+    @Autowired
+    private FountainStore fountainStore;
+
+    @Autowired
+    private WatchRepository watchRepository;
+
+    @Autowired
+    private FountainRepository fountainRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("watches.fountain.store.path", fountainStorePath::toString);
+        registry.add("watches.fountain.max-size", () -> "1KB");
+    }
+
+    @BeforeEach
+    void setUp() {
+        watchRepository.deleteAllInBatch();
+        fountainRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void saveWatchesWithSameFountain() {
+        WatchDTO first = watchService.saveWatch(TestUtils.createWatchDTO());
+        WatchDTO second = watchService.saveWatch(TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE));
+
+        Fountain fountain = fountainRepository.findAll().get(0);
+        assertThat(fountainRepository.count()).isEqualTo(1);
+        assertThat(fountain.getReferenceCount()).isEqualTo(2);
+        assertThat(fountainStore.exists(fountain.getHash())).isTrue();
+        assertThat(watchService.getFountainById(second.getId(), FountainVariant.ORIGINAL).getHash())
+                .isEqualTo(fountain.getHash());
+        assertThat(fountainService.getContentBytes(fountain.getHash())).isEqualTo(first.getFountain());
+
+        watchService.deleteWatchById(first.getId());
+        assertThat(fountainRepository.findById(fountain.getHash()).map(Fountain::getReferenceCount)).contains(1);
+        watchService.deleteWatchById(second.getId());
+        assertThat(fountainRepository.count()).isZero();
+        assertThat(fountainStore.exists(fountain.getHash())).isFalse();
+    }
+
+    @Test
+    void updateWatchFountain() {
+        WatchDTO watchDTO = watchService.saveWatch(TestUtils.createWatchDTO());
+        byte[] fountain = { 1, 2, 3 };
+        watchService.updateWatch(new WatchDTO(watchDTO.getId(), watchDTO.getTitle(), watchDTO.getPrice(),
+                watchDTO.getDescription(), fountain), null);
+
+        assertThat(fountainRepository.count()).isEqualTo(1);
+        String hash = watchService.getFountainById(watchDTO.getId(), FountainVariant.ORIGINAL).getHash();
+        assertThat(fountainService.getContentBytes(hash)).isEqualTo(fountain);
+    }
+
+    @Test
+    void acquireFountainRolledBack() {
+        byte[] fountain = { 4, 5, 6 };
+        String hash = ImageUtils.getContentHash(fountain);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            fountainService.acquire(hash, fountain);
+            assertThat(fountainStore.exists(hash)).isTrue();
+            status.setRollbackOnly();
+        });
+
+        assertThat(fountainRepository.existsById(hash)).isFalse();
+        assertThat(fountainStore.exists(hash)).isFalse();
+    }
+
+    @Test
+    void uploadFountain() throws Exception {
+        byte[] fountain = TestUtils.createWatchDTO().getFountain();
+        try (FountainUpload upload = fountainService.upload(new ByteArrayInputStream(fountain))) {
+            assertThat(upload.getHash()).isEqualTo(ImageUtils.getContentHash(fountain));
+            assertThat(upload.getSize()).isEqualTo(fountain.length);
+            assertThat(upload.getMediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+            try (InputStream content = upload.getInputStream()) {
+                assertThat(StreamUtils.copyToByteArray(content)).isEqualTo(fountain);
+            }
+        }
+    }
+
+    @Test
+    void uploadInvalidFountain() {
+        assertThatThrownBy(() -> fountainService.upload(new ByteArrayInputStream(new byte[1025])))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status").isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThatThrownBy(() -> fountainService.upload(new ByteArrayInputStream(new byte[0])))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> fountainService.upload(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 })))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status").isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.config.ObjectMapperConfiguration;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.service.PatchService;
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.json.Json;
+import javax.json.JsonMergePatch;
+import javax.json.JsonValue;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+
+import static com.cleevio.task.watches.eshop.utils.TestUtils.BASE_64_IMAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatchServiceImplTest {
+
+    private PatchService patchService;
+
+    @BeforeEach
+    void setUp() {
+        patchService = new PatchServiceImpl(Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapperConfiguration().objectMapper());
+    }
+
+    @Test
+    void applyWatchPatch() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        JsonMergePatch patch = Json.createMergePatch(Json.createObjectBuilder()
+                .add("title", "Prime")
+                .add("price", 250)
+                .add("links", JsonValue.EMPTY_JSON_ARRAY)
+                .build());
+        WatchDTO patchedWatchDTO = patchService.applyWatchPatch(patch, watchDTO);
+        assertThat(patchedWatchDTO.getId()).isEqualTo(1L);
+        assertThat(patchedWatchDTO.getTitle()).isEqualTo("Prime");
+        assertThat(patchedWatchDTO.getPrice()).isEqualTo(250);
+        assertThat(patchedWatchDTO.getDescription()).isEqualTo("Fountain watch");
+        assertThat(patchedWatchDTO.getFountain()).isSameAs(watchDTO.getFountain());
+    }
+
+    @Test
+    void applyWatchPatchAsGeneralPatch() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO("Prime", 250, "Watch", BASE_64_IMAGE);
+        JsonMergePatch patch = Json.createMergePatch(Json.createObjectBuilder()
+                .add("description", "Fountain watch")
+                .add("fountain", BASE_64_IMAGE)
+                .build());
+        WatchDTO patchedWatchDTO = patchService.applyWatchPatch(patch, watchDTO);
+        assertThat(patchedWatchDTO).isEqualTo(patchService.applyPatch(patch, watchDTO, WatchDTO.class));
+    }
+
+    @Test
+    void applyInvalidWatchPatch() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        assertThatThrownBy(() -> patchService.applyWatchPatch(Json.createMergePatch(Json.createObjectBuilder()
+                .add("title", "pri").build()), watchDTO))
+                .isInstanceOf(ConstraintViolationException.class);
+        assertThatThrownBy(() -> patchService.applyWatchPatch(Json.createMergePatch(Json.createObjectBuilder()
+                .addNull("fountain").build()), watchDTO))
+                .isInstanceOf(ConstraintViolationException.class);
+        assertThatThrownBy(() -> patchService.applyWatchPatch(Json.createMergePatch(Json.createObjectBuilder()
+                .add("price", "expensive").build()), watchDTO))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> patchService.applyWatchPatch(Json.createMergePatch(Json.createObjectBuilder()
+                .add("fountain", "not base64!").build()), watchDTO))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void applyWatchPatchWithCoercedValues() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        // Values are coerced the same way as by the object mapper converting the whole document
+        JsonMergePatch patch = Json.createMergePatch(Json.createObjectBuilder()
+                .add("price", "100")
+                .build());
+        assertThat(patchService.applyWatchPatch(patch, watchDTO).getPrice()).isEqualTo(100);
+        assertThat(patchService.applyWatchPatch(patch, watchDTO))
+                .isEqualTo(patchService.applyPatch(patch, watchDTO, WatchDTO.class));
+        patch = Json.createMergePatch(Json.createObjectBuilder()
+                .add("price", 100.5)
+                .build());
+        assertThat(patchService.applyWatchPatch(patch, watchDTO).getPrice()).isEqualTo(100);
+    }
+
+}
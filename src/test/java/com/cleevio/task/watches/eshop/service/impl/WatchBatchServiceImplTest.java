@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.config.CacheConfiguration;
+import com.cleevio.task.watches.eshop.dto.BatchItemResultDTO;
+import com.cleevio.task.watches.eshop.dto.BatchResultDTO;
+import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+import com.cleevio.task.watches.eshop.repository.WatchRepository;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.service.WatchBatchService;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
+import com.cleevio.task.watches.eshop.utils.ImageUtils;
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WatchBatchServiceImplTest {
+
+    @Mock
+    private WatchRepository watchRepository;
+
+    @Mock
+    private WatchMapper watchMapper;
+
+    @Mock
+    private FountainService fountainService;
+
+    @Mock
+    private WatchChangeService watchChangeService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WatchBatchService watchBatchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        watchBatchService = new WatchBatchServiceImpl(watchRepository, watchMapper, fountainService,
+                watchChangeService, Validation.buildDefaultValidatorFactory().getValidator(), entityManager,
+                cacheManager, transactionManager, 2);
+    }
+
+    @Test
+    void saveWatches() {
+        WatchDTO newWatchDTO = new WatchDTO("Prim", 250000, "Fountain watch",
+                TestUtils.createWatchDTO().getFountain());
+        WatchDTO existingWatchDTO = TestUtils.createWatchDTO();
+        WatchDTO unknownWatchDTO = new WatchDTO(3L, "Prime", 250, "Watch", existingWatchDTO.getFountain());
+        WatchDTO invalidWatchDTO = new WatchDTO(null, "   ", 250, "Watch", existingWatchDTO.getFountain());
+        Watch newWatch = new Watch(null, "Prim", 250000, "Fountain watch", null);
+        Watch existingWatch = TestUtils.createWatchDAO();
+        when(watchMapper.watchDTOToWatch(eq(newWatchDTO))).thenAnswer(invocation -> newWatch);
+        when(watchRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            newWatch.setId(2L);
+            return Collections.singletonList(newWatch);
+        });
+        when(watchRepository.findByIdIn(any())).thenReturn(Collections.singletonList(existingWatch));
+
+        BatchResultDTO result = watchBatchService.saveWatches(
+                Arrays.asList(newWatchDTO, existingWatchDTO, invalidWatchDTO, unknownWatchDTO).iterator());
+
+        assertThat(result.getItems().stream().map(BatchItemResultDTO::getStatus).collect(Collectors.toList()))
+                .containsExactly(BatchItemResultDTO.Status.CREATED, BatchItemResultDTO.Status.UPDATED,
+                        BatchItemResultDTO.Status.INVALID, BatchItemResultDTO.Status.NOT_FOUND);
+        assertThat(result.getItems().get(0).getId()).isEqualTo(2L);
+        assertThat(result.getItems().get(2).getErrors()).isNotEmpty();
+        assertThat(result.getSucceeded()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(2);
+        verify(watchMapper).updateWatch(eq(existingWatchDTO), eq(existingWatch));
+        verify(cacheManager).getCache(eq(CacheConfiguration.WATCHES));
+        // Existing watch keeps its unchanged fountain, only the new watch references it once more
+        verify(fountainService).acquire(eq(existingWatch.getFountain().getHash()), any());
+        verify(fountainService, never()).release(any());
+        verify(watchChangeService).recordChanges(eq(List.of(2L)), eq(WatchChangeType.CREATED));
+        verify(watchChangeService).recordChanges(eq(List.of(1L)), eq(WatchChangeType.UPDATED));
+        // Three valid watches are persisted in chunks of two
+        verify(watchRepository, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void saveWatchesWithUnreadableItems() {
+        WatchDTO watchDTO = new WatchDTO("Prim", 250000, "Fountain watch", TestUtils.createWatchDTO().getFountain());
+        when(watchMapper.watchDTOToWatch(eq(watchDTO))).thenReturn(TestUtils.createWatchDAO());
+        Iterator<WatchDTO> items = Arrays.asList(null, watchDTO, null).iterator();
+        Iterator<WatchDTO> watchDTOs = new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public WatchDTO next() {
+                WatchDTO item = items.next();
+                if (index++ == 2) {
+                    throw new RuntimeJsonMappingException("Unexpected end-of-input");
+                }
+                return item;
+            }
+        };
+
+        List<BatchItemResultDTO> results = watchBatchService.saveWatches(watchDTOs).getItems();
+
+        assertThat(results.stream().map(BatchItemResultDTO::getStatus).collect(Collectors.toList()))
+                .containsExactly(BatchItemResultDTO.Status.INVALID, BatchItemResultDTO.Status.CREATED,
+                        BatchItemResultDTO.Status.INVALID);
+        assertThat(results.get(0).getErrors()).containsExactly("must not be null");
+        assertThat(results.get(2).getErrors()).containsExactly("Unexpected end-of-input");
+    }
+
+    @Test
+    void saveWatchesWithChangedFountain() {
+        Watch existingWatch = TestUtils.createWatchDAO();
+        String previousHash = existingWatch.getFountain().getHash();
+        WatchDTO watchDTO = new WatchDTO(1L, "Prim", 250000, "Fountain watch", new byte[] { 1, 2, 3 });
+        when(watchRepository.findByIdIn(any())).thenReturn(Collections.singletonList(existingWatch));
+
+        watchBatchService.saveWatches(Collections.singletonList(watchDTO).iterator());
+
+        verify(fountainService).acquire(eq(ImageUtils.getContentHash(watchDTO.getFountain())),
+                eq(watchDTO.getFountain()));
+        verify(fountainService).release(eq(previousHash));
+    }
+
+    @Test
+    void saveWatchesWithFailedChunk() {
+        WatchDTO watchDTO = new WatchDTO("Prim", 250000, "Fountain watch", TestUtils.createWatchDTO().getFountain());
+        when(watchMapper.watchDTOToWatch(eq(watchDTO))).thenReturn(TestUtils.createWatchDAO());
+        doThrow(new DataIntegrityViolationException("Constraint violated.")).when(watchRepository).flush();
+
+        List<BatchItemResultDTO> items = watchBatchService.saveWatches(Arrays.asList(watchDTO, watchDTO).iterator())
+                .getItems();
+
+        assertThat(items).hasSize(2);
+        assertThat(items).allMatch(item -> item.getStatus() == BatchItemResultDTO.Status.FAILED);
+        assertThat(items.get(0).getErrors()).containsExactly("Constraint violated.");
+    }
+
+}
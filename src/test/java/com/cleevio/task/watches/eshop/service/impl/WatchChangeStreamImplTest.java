@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.service.impl;
+
+import com.cleevio.task.watches.eshop.dto.WatchChangeDTO;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WatchChangeStreamImplTest {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Mock
+    private WatchChangeService watchChangeService;
+
+    private WatchChangeStreamImpl watchChangeStream;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        watchChangeStream = new WatchChangeStreamImpl(watchChangeService, BATCH_SIZE, 1, 10);
+        when(watchChangeService.getLastPosition()).thenReturn(5L);
+        when(watchChangeService.getFirstPosition()).thenReturn(1L);
+        when(watchChangeService.getChanges(anyLong(), anyInt())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchChangeStream.shutdown();
+    }
+
+    @Test
+    void relayWithoutSubscribers() {
+        watchChangeStream.relay();
+        verify(watchChangeService).relayChanges();
+        verify(watchChangeService, never()).getChanges(anyLong(), anyInt());
+    }
+
+    @Test
+    void relayToSubscribersInSync() {
+        when(watchChangeService.getChanges(eq(5L), eq(BATCH_SIZE))).thenReturn(List.of(createChange(6L)));
+        watchChangeStream.subscribe(null);
+        watchChangeStream.subscribe(null);
+        watchChangeStream.relay();
+        watchChangeStream.relay();
+        // Subscribers in sync are served by a single query on each run
+        verify(watchChangeService, times(1)).getChanges(eq(5L), eq(BATCH_SIZE));
+        verify(watchChangeService, times(1)).getChanges(eq(6L), eq(BATCH_SIZE));
+    }
+
+    @Test
+    void relayToCatchingUpSubscriber() {
+        watchChangeStream.subscribe(null);
+        watchChangeStream.subscribe(2L);
+        watchChangeStream.relay();
+        verify(watchChangeService).getChanges(eq(5L), eq(BATCH_SIZE));
+        verify(watchChangeService).getChanges(eq(2L), eq(BATCH_SIZE));
+    }
+
+    @Test
+    void subscribeBehindRetention() {
+        when(watchChangeService.getFirstPosition()).thenReturn(10L);
+        watchChangeStream.subscribe(3L);
+        watchChangeStream.relay();
+        verify(watchChangeService).getChanges(eq(9L), eq(BATCH_SIZE));
+        verify(watchChangeService, never()).getChanges(eq(3L), anyInt());
+    }
+
+    private static WatchChangeDTO createChange(Long position) {
+        return new WatchChangeDTO(position, 1L, WatchChangeType.UPDATED, 2L, Instant.now());
+    }
+
+}
@@ -4,23 +4,51 @@
 
 package com.cleevio.task.watches.eshop.service.impl;
 
+import com.cleevio.task.watches.eshop.dto.FountainDTO;
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.dto.WatchSyncDTO;
 import com.cleevio.task.watches.eshop.mapper.WatchMapper;
+import com.cleevio.task.watches.eshop.model.Fountain;
 import com.cleevio.task.watches.eshop.model.Watch;
+import com.cleevio.task.watches.eshop.model.WatchChangeType;
 import com.cleevio.task.watches.eshop.repository.WatchRepository;
+import com.cleevio.task.watches.eshop.repository.projection.UpdatedWatch;
+import com.cleevio.task.watches.eshop.repository.projection.WatchSummary;
+import com.cleevio.task.watches.eshop.service.FountainDerivativeService;
+import com.cleevio.task.watches.eshop.service.FountainService;
+import com.cleevio.task.watches.eshop.service.WatchChangeService;
 import com.cleevio.task.watches.eshop.service.WatchService;
+import com.cleevio.task.watches.eshop.storage.FountainUpload;
+import com.cleevio.task.watches.eshop.storage.FountainVariant;
 import com.cleevio.task.watches.eshop.utils.TestUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,25 +60,90 @@ class WatchServiceImplTest {
     @Mock
     private WatchMapper watchMapper;
 
+    @Mock
+    private FountainService fountainService;
+
+    @Mock
+    private FountainDerivativeService fountainDerivativeService;
+
+    @Mock
+    private WatchChangeService watchChangeService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private MeterRegistry meterRegistry;
+
     private WatchService watchService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        watchService = new WatchServiceImpl(watchRepository, watchMapper);
+        meterRegistry = new SimpleMeterRegistry();
+        watchService = new WatchServiceImpl(watchRepository, watchMapper, fountainService,
+                fountainDerivativeService, watchChangeService, entityManager, meterRegistry);
     }
 
     @Test
-    void getAllWatches() {
+    void getWatches() {
         WatchDTO watchDTO = TestUtils.createWatchDTO();
         Watch watch = TestUtils.createWatchDAO();
-        when(watchRepository.findAll()).thenReturn(Collections.singletonList(watch));
-        when(watchMapper.watchToWatchDTO(eq(watch))).thenReturn(watchDTO);
-        List<WatchDTO> watches = watchService.getAllWatches();
+        when(watchRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 20))))
+                .thenReturn(Collections.singletonList(watch));
+        when(fountainService.getContentBytes(eq(watch.getFountain().getHash()))).thenReturn(watchDTO.getFountain());
+        when(watchMapper.watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()))).thenReturn(watchDTO);
+        List<WatchDTO> watches = watchService.getWatches(null, 20, true);
         assertThat(watches.size()).isEqualTo(1);
         assertThat(watches.contains(watchDTO)).isTrue();
-        verify(watchMapper).watchToWatchDTO(eq(watch));
-        verify(watchRepository).findAll();
+        verify(watchMapper).watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()));
+        verify(watchRepository).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 20)));
+    }
+
+    @Test
+    void getWatchSummaries() {
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        WatchSummary watchSummary = mock(WatchSummary.class);
+        when(watchRepository.findSummariesByIdGreaterThanOrderByIdAsc(eq(5L), eq(PageRequest.of(0, 20))))
+                .thenReturn(Collections.singletonList(watchSummary));
+        when(watchMapper.watchSummaryToWatchDTO(eq(watchSummary))).thenReturn(watchDTO);
+        List<WatchDTO> watches = watchService.getWatches(5L, 20, false);
+        assertThat(watches).containsExactly(watchDTO);
+        verify(watchRepository).findSummariesByIdGreaterThanOrderByIdAsc(eq(5L), eq(PageRequest.of(0, 20)));
+        verify(watchRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    void getModifiedWatches() {
+        Instant since = Instant.parse("2021-07-01T10:00:00Z");
+        WatchSummary first = mock(WatchSummary.class);
+        WatchSummary second = mock(WatchSummary.class);
+        when(second.getId()).thenReturn(7L);
+        when(second.getUpdatedAt()).thenReturn(since.plusSeconds(5));
+        when(watchRepository.findSummariesModifiedSince(eq(since), eq(0L), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(first, second, mock(WatchSummary.class)));
+        when(watchMapper.watchSummaryToWatchDTO(any())).thenReturn(TestUtils.createWatchSummaryDTO());
+        when(watchChangeService.getDeletedWatchIds(eq(since))).thenReturn(List.of(3L));
+        when(watchRepository.findSyncPoint()).thenReturn(since.plusSeconds(600));
+        WatchSyncDTO sync = watchService.getModifiedWatches(since, null, null, 2);
+        assertThat(sync.getWatches()).hasSize(2);
+        assertThat(sync.getDeleted()).containsExactly(3L);
+        assertThat(sync.hasNext()).isTrue();
+        assertThat(sync.getNextModifiedSince()).isEqualTo(since.plusSeconds(5));
+        assertThat(sync.getNextAfter()).isEqualTo(7L);
+        assertThat(sync.getSyncedAt()).isEqualTo(since.plusSeconds(540));
+
+        // Deleted watches are reported with the first page only
+        when(watchRepository.findSummariesModifiedSince(eq(since.plusSeconds(5)), eq(7L), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(first));
+        WatchSyncDTO lastPage = watchService.getModifiedWatches(sync.getNextModifiedSince(), sync.getNextAfter(),
+                sync.getSyncedAt(), 2);
+        assertThat(lastPage.getWatches()).hasSize(1);
+        assertThat(lastPage.getDeleted()).isEmpty();
+        assertThat(lastPage.hasNext()).isFalse();
+        // Next pages keep the sync point of the first one, deletions made meanwhile are reported by the next sync
+        assertThat(lastPage.getSyncedAt()).isEqualTo(sync.getSyncedAt());
+        verify(watchChangeService).getDeletedWatchIds(any());
+        verify(watchRepository).findSyncPoint();
     }
 
     @Test
@@ -58,31 +151,192 @@ class WatchServiceImplTest {
         WatchDTO watchDTO = TestUtils.createWatchDTO();
         Watch watch = TestUtils.createWatchDAO();
         when(watchRepository.findById(eq(1L))).thenReturn(Optional.of(watch));
-        when(watchMapper.watchToWatchDTO(eq(watch))).thenReturn(watchDTO);
-        WatchDTO retrievedWatchDTO = watchService.getWatchById(1L);
+        when(fountainService.getContentBytes(eq(watch.getFountain().getHash()))).thenReturn(watchDTO.getFountain());
+        when(watchMapper.watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()))).thenReturn(watchDTO);
+        WatchDTO retrievedWatchDTO = watchService.getWatchById(1L, true);
         assertThat(retrievedWatchDTO.equals(watchDTO)).isTrue();
-        verify(watchMapper).watchToWatchDTO(eq(watch));
+        verify(watchMapper).watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()));
         verify(watchRepository).findById(eq(1L));
     }
 
+    @Test
+    void getWatchSummaryById() {
+        WatchDTO watchDTO = TestUtils.createWatchSummaryDTO();
+        WatchSummary watchSummary = mock(WatchSummary.class);
+        when(watchRepository.findSummaryById(eq(1L))).thenReturn(Optional.of(watchSummary));
+        when(watchMapper.watchSummaryToWatchDTO(eq(watchSummary))).thenReturn(watchDTO);
+        WatchDTO retrievedWatchDTO = watchService.getWatchById(1L, false);
+        assertThat(retrievedWatchDTO.equals(watchDTO)).isTrue();
+        verify(watchRepository).findSummaryById(eq(1L));
+        verify(watchRepository, never()).findById(any());
+    }
+
+    @Test
+    void getFountainById() {
+        Fountain fountain = TestUtils.createFountain();
+        Resource content = new ByteArrayResource(TestUtils.createWatchDTO().getFountain());
+        when(watchRepository.findFountainById(eq(1L))).thenReturn(Optional.of(fountain));
+        when(fountainService.getContent(eq(fountain.getHash()))).thenReturn(content);
+        FountainDTO fountainDTO = watchService.getFountainById(1L, FountainVariant.ORIGINAL);
+        assertThat(fountainDTO.getMediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(fountainDTO.getSize()).isEqualTo(fountain.getSize());
+        assertThat(fountainDTO.getContent()).isSameAs(content);
+        assertThat(watchService.getFountainById(2L, FountainVariant.ORIGINAL)).isNull();
+        DistributionSummary fountainSize = meterRegistry.get("watches.fountain.size")
+                .tag("operation", "read").summary();
+        assertThat(fountainSize.count()).isEqualTo(1);
+        assertThat(fountainSize.totalAmount()).isEqualTo(fountain.getSize());
+    }
+
+    @Test
+    void getFountainThumbnailById() {
+        Fountain fountain = TestUtils.createFountain();
+        Resource content = new ByteArrayResource(TestUtils.createWatchDTO().getFountain());
+        Resource thumbnail = new ByteArrayResource(new byte[] { 1, 2, 3 });
+        when(watchRepository.findFountainById(eq(1L))).thenReturn(Optional.of(fountain));
+        when(fountainService.getContent(eq(fountain.getHash()))).thenReturn(content);
+        when(fountainDerivativeService.getDerivative(eq(fountain.getHash()), eq(FountainVariant.THUMB)))
+                .thenReturn(thumbnail, (Resource) null);
+        FountainDTO fountainDTO = watchService.getFountainById(1L, FountainVariant.THUMB);
+        assertThat(fountainDTO.getVariant()).isEqualTo(FountainVariant.THUMB);
+        assertThat(fountainDTO.getMediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(fountainDTO.getSize()).isEqualTo(3);
+        assertThat(fountainDTO.getContent()).isSameAs(thumbnail);
+        // Original is served until the thumbnail is generated
+        fountainDTO = watchService.getFountainById(1L, FountainVariant.THUMB);
+        assertThat(fountainDTO.getVariant()).isEqualTo(FountainVariant.ORIGINAL);
+        assertThat(fountainDTO.getContent()).isSameAs(content);
+    }
+
+    @Test
+    void exportWatches() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        Watch watch = TestUtils.createWatchDAO();
+        when(watchRepository.streamAllOrderById()).thenReturn(Stream.of(watch));
+        when(fountainService.getContentBytes(eq(watch.getFountain().getHash()))).thenReturn(watchDTO.getFountain());
+        when(watchMapper.watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()))).thenReturn(watchDTO);
+        List<WatchDTO> exported = new ArrayList<>();
+        watchService.exportWatches(exported::add);
+        assertThat(exported).containsExactly(watchDTO);
+        verify(entityManager).detach(eq(watch));
+        verify(entityManager).detach(eq(watch.getFountain()));
+    }
+
     @Test
     void saveWatch() {
         WatchDTO watchDTO = TestUtils.createWatchDTO();
         Watch watch = TestUtils.createWatchDAO();
+        Fountain fountain = watch.getFountain();
+        when(entityManager.getReference(eq(Fountain.class), eq(fountain.getHash()))).thenReturn(fountain);
         when(watchRepository.save(eq(watch))).thenReturn(watch);
-        when(watchMapper.watchToWatchDTO(eq(watch))).thenReturn(watchDTO);
+        when(watchMapper.watchToWatchDTO(eq(watch), eq(watchDTO.getFountain()))).thenReturn(watchDTO);
         when(watchMapper.watchDTOToWatch(eq(watchDTO))).thenReturn(watch);
         WatchDTO retrievedWatchDTO = watchService.saveWatch(watchDTO);
         assertThat(retrievedWatchDTO.equals(watchDTO)).isTrue();
+        assertThat(watch.getFountain()).isSameAs(fountain);
+        verify(fountainService).acquire(eq(fountain.getHash()), eq(watchDTO.getFountain()));
         verify(watchMapper).watchDTOToWatch(eq(watchDTO));
-        verify(watchMapper).watchToWatchDTO(eq(watch));
         verify(watchRepository).save(eq(watch));
+        verify(watchChangeService).recordChange(eq(watchDTO.getId()), eq(WatchChangeType.CREATED));
+    }
+
+    @Test
+    void updateWatch() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        String fountainHash = TestUtils.createFountain().getHash();
+        when(watchRepository.updateWatch(eq(1L), eq("Prim"), eq(250000), eq("Fountain watch"), eq(fountainHash)))
+                .thenReturn(Optional.of(createUpdatedWatch(fountainHash, 1L)));
+        WatchDTO updatedWatchDTO = watchService.updateWatch(watchDTO, null);
+        assertThat(updatedWatchDTO.getTitle()).isEqualTo("Prim");
+        assertThat(updatedWatchDTO.getVersion()).isEqualTo(1L);
+        verify(watchRepository, never()).findById(any());
+        verify(watchRepository, never()).save(any());
+        verify(watchRepository, never()).existsById(any());
+        // Unchanged fountain isn't stored again
+        verify(fountainService, never()).acquire(any(), any());
+        verify(fountainService, never()).release(any());
+        verify(watchChangeService).recordChange(eq(1L), eq(WatchChangeType.UPDATED));
+    }
+
+    @Test
+    void updateWatchWithChangedFountain() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        String fountainHash = TestUtils.createFountain().getHash();
+        when(watchRepository.updateWatch(eq(1L), eq("Prim"), eq(250000), eq("Fountain watch"), eq(fountainHash)))
+                .thenReturn(Optional.of(createUpdatedWatch("previous", 1L)));
+        watchService.updateWatch(watchDTO, null);
+        verify(fountainService).acquire(eq(fountainHash), eq(watchDTO.getFountain()));
+        verify(fountainService).release(eq("previous"));
+    }
+
+    @Test
+    void updateWatchWithVersion() {
+        WatchDTO watchDTO = TestUtils.createWatchDTO();
+        String fountainHash = TestUtils.createFountain().getHash();
+        when(watchRepository.updateWatch(eq(1L), eq("Prim"), eq(250000), eq("Fountain watch"), eq(fountainHash),
+                eq(3L))).thenReturn(Optional.of(createUpdatedWatch(fountainHash, 4L)));
+        assertThat(watchService.updateWatch(watchDTO, 3L).getVersion()).isEqualTo(4L);
+    }
+
+    @Test
+    void updateWatchWithStaleVersion() {
+        when(watchRepository.existsById(eq(1L))).thenReturn(true);
+        assertThatThrownBy(() -> watchService.updateWatch(TestUtils.createWatchDTO(), 2L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        // Fountain of the rejected update isn't stored
+        verify(fountainService, never()).acquire(any(), any());
+    }
+
+    @Test
+    void updateWatchThatDoesntExist() {
+        assertThat(watchService.updateWatch(TestUtils.createWatchDTO(), null)).isNull();
+        assertThat(watchService.updateWatch(TestUtils.createWatchDTO(), 2L)).isNull();
+    }
+
+    @Test
+    void updateFountain() {
+        FountainUpload upload = new FountainUpload(Paths.get("upload"), "hash", 3, MediaType.IMAGE_PNG);
+        when(watchRepository.updateFountain(eq(1L), eq("hash"), eq(3L)))
+                .thenReturn(Optional.of(createUpdatedWatch("previous", 4L)));
+        assertThat(watchService.updateFountain(1L, upload, 3L)).isEqualTo(4L);
+        verify(fountainService).acquire(eq(upload));
+        verify(fountainService).release(eq("previous"));
+        assertThat(watchService.updateFountain(2L, upload, null)).isNull();
+    }
+
+    @Test
+    void updateFountainWithStaleVersion() {
+        FountainUpload upload = new FountainUpload(Paths.get("upload"), "hash", 3, MediaType.IMAGE_PNG);
+        when(watchRepository.existsById(eq(1L))).thenReturn(true);
+        assertThatThrownBy(() -> watchService.updateFountain(1L, upload, 2L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        verify(fountainService, never()).acquire(any(FountainUpload.class));
+        verify(fountainService, never()).release(any());
     }
 
     @Test
     void deleteWatchById() {
-        watchService.deleteWatchById(1L);
-        verify(watchRepository).deleteById(eq(1L));
+        when(watchRepository.deleteWatchById(eq(1L))).thenReturn(Optional.of("hash"));
+        assertThat(watchService.deleteWatchById(1L)).isTrue();
+        assertThat(watchService.deleteWatchById(2L)).isFalse();
+        verify(fountainService).release(eq("hash"));
+        verify(fountainService).release(any());
+        verify(watchRepository, never()).findById(any());
+        verify(watchChangeService).recordChange(eq(1L), eq(WatchChangeType.DELETED));
+    }
+
+    private static UpdatedWatch createUpdatedWatch(String previousFountainHash, Long version) {
+        return new UpdatedWatch() {
+            @Override
+            public String getPreviousFountainHash() {
+                return previousFountainHash;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
     }
 
 }
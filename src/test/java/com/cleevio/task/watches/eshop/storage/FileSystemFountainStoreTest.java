@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSystemFountainStoreTest {
+
+    private static final String KEY = "d2f5a8b1c3";
+
+    @TempDir
+    Path root;
+
+    private FountainStore fountainStore;
+
+    @BeforeEach
+    void setUp() {
+        fountainStore = new FileSystemFountainStore(root);
+    }
+
+    @Test
+    void writeAndRead() throws Exception {
+        byte[] fountain = TestUtils.createWatchDTO().getFountain();
+        fountainStore.write(KEY, new ByteArrayInputStream(fountain), fountain.length);
+
+        Resource resource = fountainStore.read(KEY);
+        assertThat(fountainStore.exists(KEY)).isTrue();
+        assertThat(resource.isFile()).isTrue();
+        assertThat(resource.getFile().toPath()).isEqualTo(root.resolve("d2").resolve(KEY));
+        assertThat(resource.contentLength()).isEqualTo(fountain.length);
+        try (InputStream content = resource.getInputStream()) {
+            assertThat(StreamUtils.copyToByteArray(content)).isEqualTo(fountain);
+        }
+    }
+
+    @Test
+    void delete() {
+        fountainStore.write(KEY, new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 3);
+        fountainStore.delete(KEY);
+        assertThat(fountainStore.exists(KEY)).isFalse();
+        assertThat(fountainStore.read(KEY).exists()).isFalse();
+        fountainStore.delete(KEY);
+    }
+
+}
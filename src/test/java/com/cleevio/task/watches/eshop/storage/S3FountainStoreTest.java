@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021, Anna Drevikovska.
+ */
+
+package com.cleevio.task.watches.eshop.storage;
+
+import com.cleevio.task.watches.eshop.utils.TestUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers(disabledWithoutDocker = true)
+class S3FountainStoreTest {
+
+    private static final String ACCESS_KEY = "minioadmin";
+    private static final String SECRET_KEY = "minioadmin";
+    private static final String BUCKET = "fountains";
+    private static final int MINIO_PORT = 9000;
+
+    @Container
+    private static final GenericContainer<?> MINIO = new GenericContainer<>("minio/minio:RELEASE.2021-06-17T00-10-46Z")
+            .withEnv("MINIO_ROOT_USER", ACCESS_KEY)
+            .withEnv("MINIO_ROOT_PASSWORD", SECRET_KEY)
+            .withCommand("server", "/data")
+            .withExposedPorts(MINIO_PORT)
+            .waitingFor(Wait.forHttp("/minio/health/ready").forPort(MINIO_PORT));
+
+    private static S3Client s3Client;
+    private static FountainStore fountainStore;
+
+    @BeforeAll
+    static void setUp() {
+        s3Client = S3Client.builder()
+                .endpointOverride(URI.create("http://" + MINIO.getHost() + ":" + MINIO.getMappedPort(MINIO_PORT)))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(ACCESS_KEY, SECRET_KEY)))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        s3Client.createBucket(request -> request.bucket(BUCKET));
+        fountainStore = new S3FountainStore(s3Client, BUCKET);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        s3Client.close();
+    }
+
+    @Test
+    void writeAndRead() throws Exception {
+        byte[] fountain = TestUtils.createWatchDTO().getFountain();
+        fountainStore.write("written", new ByteArrayInputStream(fountain), fountain.length);
+
+        Resource resource = fountainStore.read("written");
+        assertThat(fountainStore.exists("written")).isTrue();
+        assertThat(resource.contentLength()).isEqualTo(fountain.length);
+        try (InputStream content = resource.getInputStream()) {
+            assertThat(StreamUtils.copyToByteArray(content)).isEqualTo(fountain);
+        }
+    }
+
+    @Test
+    void delete() {
+        fountainStore.write("deleted", new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 3);
+        fountainStore.delete("deleted");
+        assertThat(fountainStore.exists("deleted")).isFalse();
+        assertThatThrownBy(() -> fountainStore.read("deleted").getInputStream())
+                .isInstanceOf(FileNotFoundException.class);
+    }
+
+}
@@ -5,6 +5,7 @@
 package com.cleevio.task.watches.eshop.utils;
 
 import com.cleevio.task.watches.eshop.dto.WatchDTO;
+import com.cleevio.task.watches.eshop.model.Fountain;
 import com.cleevio.task.watches.eshop.model.Watch;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
@@ -69,16 +70,25 @@ public final class TestUtils {
         return createWatchDTO("Prim", 250000, "Fountain watch", BASE_64_IMAGE);
     }
 
+    public static WatchDTO createWatchSummaryDTO() {
+        return new WatchDTO(1L, "Prim", 250000, "Fountain watch", null);
+    }
+
     public static Watch createWatchDAO() {
         return new Watch(
                 1L,
                 "Prim",
                 250000,
                 "Fountain watch",
-                Base64Utils.decodeFromString(BASE_64_IMAGE)
+                createFountain()
         );
     }
 
+    public static Fountain createFountain() {
+        byte[] content = Base64Utils.decodeFromString(BASE_64_IMAGE);
+        return new Fountain(ImageUtils.getContentHash(content), content.length, MediaType.IMAGE_JPEG_VALUE);
+    }
+
     public static ObjectNode createWatch() {
         return createWatch("Prim", 250000, "Fountain watch", BASE_64_IMAGE);
     }